@@ -0,0 +1,381 @@
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * An immutable quadtree of a bilevel mask, such as a scanned page or a selection, stored in two
+ * bits per node.
+ * <p/>
+ * Every node is {@code WHITE}, {@code BLACK} or {@code MIXED}, and the nodes are stored level by
+ * level in breadth-first order, 32 to a {@code long}. No child pointers are kept: the children of
+ * a mixed node are the four nodes starting at {@code 1 + 4 * r}, where {@code r} is the number of
+ * mixed nodes before it. That rank is found with a table of counts per word and one
+ * {@link Long#bitCount} of the word itself, and the area is counted the same way a level at a
+ * time, so neither looks at nodes one by one.
+ * <p/>
+ * Like {@link QuadTreeImpl}, four equal leaves are always merged into their parent, so every mask
+ * has exactly one representation. {@link #union} and {@link #intersection} visit both trees only
+ * where neither decides the result on its own, e.g. a black node in a union or a white node in an
+ * intersection cuts off the other side, and merge the leaves they produce on the way back up.
+ * Where only one side is mixed its subtree is copied unchanged. The descendants of a node are
+ * contiguous on every level, so the copy moves them a level at a time as ranges of words.
+ *
+ * @author Darshan
+ */
+public final class BinaryQuadTree {
+
+    private static final int WHITE = 0;
+    private static final int BLACK = 1;
+    private static final int MIXED = 2;
+    //the low bit of every 2-bit state
+    private static final long LOW_BITS = 0x5555555555555555L;
+    //the quadrants in the order children are stored in
+    private static final QuadNode.QuadName[] ORDER = {QuadNode.QuadName.TOP_LEFT,
+        QuadNode.QuadName.TOP_RIGHT, QuadNode.QuadName.BOTTOM_LEFT,
+        QuadNode.QuadName.BOTTOM_RIGHT};
+
+    private final int dimension;
+    private final long[] states;
+    private final int size;
+    //number of mixed nodes in the words before each word
+    private final int[] ranks;
+    //index of the first node of each level, followed by the total number of nodes
+    private final int[] levelStarts;
+
+    private BinaryQuadTree(int dimension, long[] states, int size, int[] levelStarts) {
+        this.dimension = dimension;
+        this.states = states;
+        this.size = size;
+        this.levelStarts = levelStarts;
+        ranks = new int[states.length + 1];
+        for (int i = 0; i < states.length; i++) {
+            ranks[i + 1] = ranks[i] + Long.bitCount(mixedBits(states[i]));
+        }
+    }
+
+    /**
+     * Builds the mask of the pixels of {@code tree} whose color satisfies {@code black}. The
+     * predicate is evaluated once per leaf, not per pixel.
+     *
+     * @param tree the image
+     * @param black selects the colors that belong to the mask
+     * @return the mask
+     * @throws IllegalArgumentException if {@code tree} or {@code black} is null
+     */
+    public static BinaryQuadTree of(QuadTree tree, IntPredicate black) {
+        if (tree == null || black == null) {
+            throw new IllegalArgumentException();
+        }
+        Levels levels = new Levels(tree.getDimension());
+        levels.append(0, build(tree.getRoot(), 1, black, levels));
+        return levels.toTree();
+    }
+
+    /**
+     * Converts the mask back to an image.
+     *
+     * @param black the color of the pixels in the mask
+     * @param white the color of the other pixels
+     * @return a new {@link QuadTreeImpl}
+     */
+    public QuadTree toQuadTree(int black, int white) {
+        QuadTreeImpl tree = new QuadTreeImpl(toNode(0, dimension, black, white));
+        tree.compact();
+        return tree;
+    }
+
+    /**
+     * Returns the pixels that are in this mask or in {@code other}.
+     *
+     * @param other a mask of the same dimension
+     * @return the union
+     * @throws IllegalArgumentException if {@code other} is null or of another dimension
+     */
+    public BinaryQuadTree union(BinaryQuadTree other) {
+        return combine(other, BLACK);
+    }
+
+    /**
+     * Returns the pixels that are in both this mask and {@code other}.
+     *
+     * @param other a mask of the same dimension
+     * @return the intersection
+     * @throws IllegalArgumentException if {@code other} is null or of another dimension
+     */
+    public BinaryQuadTree intersection(BinaryQuadTree other) {
+        return combine(other, WHITE);
+    }
+
+    /**
+     * Returns whether pixel {@code (x, y)} is in the mask.
+     *
+     * @param x the {@code x}-coordinate
+     * @param y the {@code y}-coordinate
+     * @return {@code true} if the pixel is black
+     * @throws IllegalArgumentException if {@code x} or {@code y} is out of bounds
+     */
+    public boolean contains(int x, int y) {
+        if (x < 0 || x >= dimension || y < 0 || y >= dimension) {
+            throw new IllegalArgumentException();
+        }
+        int node = 0;
+        for (int half = dimension / 2; state(node) == MIXED; half /= 2) {
+            //children are stored in the order top left, top right, bottom left, bottom right
+            int quadrant = ((y & half) != 0 ? 2 : 0) + ((x & half) != 0 ? 1 : 0);
+            node = firstChild(node) + quadrant;
+        }
+        return state(node) == BLACK;
+    }
+
+    /**
+     * Returns the number of pixels in the mask.
+     *
+     * @return the black area
+     */
+    public long getArea() {
+        long area = 0;
+        for (int level = 0; level + 1 < levelStarts.length; level++) {
+            long side = dimension >> level;
+            area += countBlack(levelStarts[level], levelStarts[level + 1]) * side * side;
+        }
+        return area;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Returns the number of nodes, which equals the node count of a {@link QuadTreeImpl} of the
+     * same two-color image.
+     *
+     * @return the node count
+     */
+    public int getSize() {
+        return size;
+    }
+
+    //helper methods
+    private static long mixedBits(long word) {
+        return (word >>> 1) & LOW_BITS;
+    }
+
+    private static long blackBits(long word) {
+        return word & ~(word >>> 1) & LOW_BITS;
+    }
+
+    private int state(int node) {
+        return (int) (states[node >>> 5] >>> ((node & 31) * 2)) & 3;
+    }
+
+    private int firstChild(int node) {
+        return 1 + 4 * rank(node);
+    }
+
+    //number of mixed nodes before node, which may be one past the last node
+    private int rank(int node) {
+        if ((node & 31) == 0) {
+            return ranks[node >>> 5];
+        }
+        long below = (1L << ((node & 31) * 2)) - 1;
+        return ranks[node >>> 5] + Long.bitCount(mixedBits(states[node >>> 5]) & below);
+    }
+
+    //counts the black nodes in [from, to) a word at a time
+    private long countBlack(int from, int to) {
+        long count = 0;
+        for (int word = from >>> 5; word <= (to - 1) >>> 5 && from < to; word++) {
+            long bits = blackBits(states[word]);
+            if (word == from >>> 5) {
+                bits &= -1L << ((from & 31) * 2);
+            }
+            if (word == (to - 1) >>> 5 && (to & 31) != 0) {
+                bits &= (1L << ((to & 31) * 2)) - 1;
+            }
+            count += Long.bitCount(bits);
+        }
+        return count;
+    }
+
+    //appends the children of node to levels and returns its state after merging equal leaves
+    private static int build(QuadNode node, int level, IntPredicate black, Levels levels) {
+        if (node.isLeaf()) {
+            return black.test(node.getColor()) ? BLACK : WHITE;
+        }
+        for (QuadNode.QuadName quadrant : ORDER) {
+            levels.append(level, build(node.getQuadrant(quadrant), level + 1, black, levels));
+        }
+        return levels.mergeLast(level);
+    }
+
+    private QuadNode toNode(int node, int size, int black, int white) {
+        int state = state(node);
+        if (state != MIXED) {
+            return new QuadNodeImpl(size, state == BLACK ? black : white);
+        }
+        QuadNode result = new QuadNodeImpl(size);
+        int child = firstChild(node);
+        for (int i = 0; i < 4; i++) {
+            result.setQuadrant(ORDER[i], toNode(child + i, size / 2, black, white));
+        }
+        return result;
+    }
+
+    //dominant is the state that decides the result on its own: black for union, white otherwise
+    private BinaryQuadTree combine(BinaryQuadTree other, int dominant) {
+        if (other == null || other.dimension != dimension) {
+            throw new IllegalArgumentException();
+        }
+        Levels levels = new Levels(dimension);
+        levels.append(0, combine(this, 0, other, 0, 1, dominant, levels));
+        return levels.toTree();
+    }
+
+    private static int combine(BinaryQuadTree a, int nodeA, BinaryQuadTree b, int nodeB,
+            int level, int dominant, Levels levels) {
+        int stateA = a.state(nodeA);
+        int stateB = b.state(nodeB);
+        if (stateA == dominant || stateB == dominant) {
+            return dominant;
+        }
+        if (stateA != MIXED) {
+            return b.copy(nodeB, level, levels);
+        }
+        if (stateB != MIXED) {
+            return a.copy(nodeA, level, levels);
+        }
+        int childA = a.firstChild(nodeA);
+        int childB = b.firstChild(nodeB);
+        for (int i = 0; i < 4; i++) {
+            levels.append(level, combine(a, childA + i, b, childB + i, level + 1, dominant,
+                    levels));
+        }
+        return levels.mergeLast(level);
+    }
+
+    //appends the descendants of node unchanged and returns its state
+    private int copy(int node, int level, Levels levels) {
+        int state = state(node);
+        if (state == MIXED) {
+            //the children of the nodes in [from, to) are the nodes in [firstChild(from),
+            //firstChild(to)) of the next level
+            int from = firstChild(node);
+            int to = from + 4;
+            while (from < to) {
+                levels.append(level++, states, from, to);
+                from = firstChild(from);
+                to = firstChild(to);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * The states of a tree under construction, one growable list per level. A depth-first
+     * traversal that appends the children of every node to the list of their level produces each
+     * level in breadth-first order, so the lists only need to be concatenated at the end.
+     */
+    private static class Levels {
+
+        private final int dimension;
+        private final long[][] words;
+        private final int[] counts;
+
+        Levels(int dimension) {
+            this.dimension = dimension;
+            int depth = Integer.numberOfTrailingZeros(dimension) + 1;
+            words = new long[depth][1];
+            counts = new int[depth];
+        }
+
+        void append(int level, int state) {
+            int count = counts[level];
+            if (count >>> 5 == words[level].length) {
+                words[level] = Arrays.copyOf(words[level], words[level].length * 2);
+            }
+            words[level][count >>> 5] |= (long) state << ((count & 31) * 2);
+            counts[level] = count + 1;
+        }
+
+        //appends the states of nodes [from, to) of source a word at a time
+        void append(int level, long[] source, int from, int to) {
+            int count = counts[level];
+            int total = count + to - from;
+            int length = words[level].length;
+            while (length < (total + 31) >>> 5) {
+                length *= 2;
+            }
+            if (length != words[level].length) {
+                words[level] = Arrays.copyOf(words[level], length);
+            }
+            long[] target = words[level];
+            for (int i = from; i < to; i += 32) {
+                int shift = (i & 31) * 2;
+                long word = source[i >>> 5] >>> shift;
+                if (shift != 0 && (i >>> 5) + 1 < source.length) {
+                    word |= source[(i >>> 5) + 1] << (64 - shift);
+                }
+                if (to - i < 32) {
+                    word &= (1L << ((to - i) * 2)) - 1;
+                }
+                //the word lands on at most two words of the level
+                shift = (count & 31) * 2;
+                target[count >>> 5] |= word << shift;
+                if (shift != 0 && (count >>> 5) + 1 < target.length) {
+                    target[(count >>> 5) + 1] |= word >>> (64 - shift);
+                }
+                count += Math.min(32, to - i);
+            }
+            counts[level] = total;
+        }
+
+        //replaces the last four states of level by one leaf if they are equal leaves
+        int mergeLast(int level) {
+            int count = counts[level];
+            int first = get(level, count - 4);
+            if (first == MIXED) {
+                return MIXED;
+            }
+            for (int i = count - 3; i < count; i++) {
+                if (get(level, i) != first) {
+                    return MIXED;
+                }
+            }
+            for (int i = count - 4; i < count; i++) {
+                words[level][i >>> 5] &= ~(3L << ((i & 31) * 2));
+            }
+            counts[level] = count - 4;
+            return first;
+        }
+
+        private int get(int level, int index) {
+            return (int) (words[level][index >>> 5] >>> ((index & 31) * 2)) & 3;
+        }
+
+        BinaryQuadTree toTree() {
+            int levelCount = counts.length;
+            while (levelCount > 1 && counts[levelCount - 1] == 0) {
+                levelCount--;
+            }
+            int[] levelStarts = new int[levelCount + 1];
+            for (int level = 0; level < levelCount; level++) {
+                levelStarts[level + 1] = levelStarts[level] + counts[level];
+            }
+            int size = levelStarts[levelCount];
+            long[] states = new long[(size + 31) >>> 5];
+            for (int level = 0; level < levelCount; level++) {
+                int start = levelStarts[level];
+                for (int i = 0; i < counts[level]; i += 32) {
+                    //a word of this level lands on at most two words of the result
+                    long word = words[level][i >>> 5];
+                    int position = start + i;
+                    int shift = (position & 31) * 2;
+                    states[position >>> 5] |= word << shift;
+                    if (shift != 0 && (position >>> 5) + 1 < states.length) {
+                        states[(position >>> 5) + 1] |= word >>> (64 - shift);
+                    }
+                }
+            }
+            return new BinaryQuadTree(dimension, states, size, levelStarts);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class BinaryQuadTreeTest {
+
+    boolean[][] first, second;
+    BinaryQuadTree mask1, mask2;
+    @Before
+    public void setUp() {
+        Random random = new Random(3);
+        first = new boolean[64][64];
+        second = new boolean[64][64];
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                //a solid block and a band of noise, like a page with text
+                first[y][x] = (x < 32 && y < 16) || (y >= 40 && random.nextInt(3) == 0);
+                second[y][x] = x >= 16 && x < 48 && (y < 24 || random.nextBoolean());
+            }
+        }
+        mask1 = BinaryQuadTree.of(new QuadTreeImpl(image(first)), color -> color == 1);
+        mask2 = BinaryQuadTree.of(new QuadTreeImpl(image(second)), color -> color == 1);
+    }
+
+    @Test
+    public void testFromQuadTree() {
+        long area = 0;
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                assertEquals(first[y][x], mask1.contains(x, y));
+                area += first[y][x] ? 1 : 0;
+            }
+        }
+        assertEquals(area, mask1.getArea());
+        assertEquals(64, mask1.getDimension());
+        assertEquals(new QuadTreeImpl(image(first), 0).getRoot().getSize(), mask1.getSize());
+    }
+
+    @Test
+    public void testToQuadTree() {
+        QuadTree tree = mask1.toQuadTree(0xFFFFFF, 0x000000);
+        int[][] expected = new int[64][64];
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                expected[y][x] = first[y][x] ? 0xFFFFFF : 0;
+            }
+        }
+        assertArrayEquals(expected, tree.decompress());
+        assertEquals(mask1.getSize(), tree.getRoot().getSize());
+    }
+
+    @Test
+    public void testUnionAndIntersection() {
+        BinaryQuadTree union = mask1.union(mask2);
+        BinaryQuadTree intersection = mask1.intersection(mask2);
+        boolean[][] or = new boolean[64][64];
+        boolean[][] and = new boolean[64][64];
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                or[y][x] = first[y][x] || second[y][x];
+                and[y][x] = first[y][x] && second[y][x];
+                assertEquals(or[y][x], union.contains(x, y));
+                assertEquals(and[y][x], intersection.contains(x, y));
+            }
+        }
+        assertEquals(mask1.getArea() + mask2.getArea(), union.getArea() + intersection.getArea());
+        //the results are as compact as masks built from scratch
+        assertEquals(new QuadTreeImpl(image(or), 0).getRoot().getSize(), union.getSize());
+        assertEquals(new QuadTreeImpl(image(and), 0).getRoot().getSize(), intersection.getSize());
+    }
+
+    @Test
+    public void testComplementsMerge() {
+        boolean[][] inverse = new boolean[64][64];
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                inverse[y][x] = !first[y][x];
+            }
+        }
+        BinaryQuadTree complement = BinaryQuadTree.of(new QuadTreeImpl(image(inverse)),
+                color -> color == 1);
+        BinaryQuadTree all = mask1.union(complement);
+        assertEquals(1, all.getSize());
+        assertEquals(64 * 64, all.getArea());
+        BinaryQuadTree none = mask1.intersection(complement);
+        assertEquals(1, none.getSize());
+        assertEquals(0, none.getArea());
+    }
+
+    @Test
+    public void testCombineWithLeafCopies() {
+        //white never decides a union, so the whole of mask1 is copied
+        BinaryQuadTree empty = BinaryQuadTree.of(new QuadTreeImpl(new int[64][64]),
+                color -> color == 1);
+        BinaryQuadTree copy = mask1.union(empty);
+        assertEquals(mask1.getSize(), copy.getSize());
+        assertEquals(mask1.getArea(), copy.getArea());
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                assertEquals(first[y][x], copy.contains(x, y));
+            }
+        }
+        //nor does black an intersection
+        BinaryQuadTree full = BinaryQuadTree.of(new QuadTreeImpl(new int[64][64]),
+                color -> color == 0);
+        assertArrayEquals(mask2.toQuadTree(1, 0).decompress(),
+                mask2.intersection(full).toQuadTree(1, 0).decompress());
+    }
+
+    @Test
+    public void testPredicateMergesLeaves() {
+        int[][] img = {
+            {1, 2},
+            {3, 4}
+        };
+        BinaryQuadTree mask = BinaryQuadTree.of(new QuadTreeImpl(img), color -> color > 0);
+        assertEquals(1, mask.getSize());
+        assertEquals(4, mask.getArea());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testDimensionMismatch() {
+        mask1.union(BinaryQuadTree.of(new QuadTreeImpl(new int[2][2]), color -> true));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testContainsOutOfBounds() {
+        mask1.contains(64, 0);
+    }
+
+    //helper methods
+    private static int[][] image(boolean[][] mask) {
+        int[][] img = new int[mask.length][mask.length];
+        for (int y = 0; y < mask.length; y++) {
+            for (int x = 0; x < mask.length; x++) {
+                img[y][x] = mask[y][x] ? 1 : 0;
+            }
+        }
+        return img;
+    }
+}
@@ -0,0 +1,165 @@
+import java.util.Arrays;
+
+/**
+ * A small summary of the colors inside a region: the pixel counts of its {@link #CAPACITY} most
+ * common colors plus the number of remaining pixels.
+ * <p/>
+ * The summary is exact while the region holds at most {@link #CAPACITY} distinct colors. Once it
+ * overflows, the counts of the colors that are kept may be underestimated, so callers must only
+ * rely on summaries for which {@link #isExact()} returns {@code true}. Instances are immutable.
+ *
+ * @author Darshan
+ */
+public final class ColorCounts {
+
+    public static final int CAPACITY = 8;
+
+    private final int[] colors;
+    private final long[] counts;
+    private final long other;
+
+    private ColorCounts(int[] colors, long[] counts, long other) {
+        this.colors = colors;
+        this.counts = counts;
+        this.other = other;
+    }
+
+    /**
+     * Returns the summary of a uniform region.
+     *
+     * @param color the color of the region
+     * @param area the number of pixels in the region
+     * @return a summary holding a single color
+     */
+    public static ColorCounts of(int color, long area) {
+        return new ColorCounts(new int[] {color}, new long[] {area}, 0);
+    }
+
+    /**
+     * Returns the summary of a region from counts gathered directly from its pixels.
+     *
+     * @param colors distinct colors, of which the first {@code size} are used
+     * @param counts the pixel count of each color
+     * @param size the number of colors, at most {@link #CAPACITY}
+     * @param other the number of pixels of colors that are not kept
+     * @return a summary keeping the given colors
+     */
+    static ColorCounts of(int[] colors, long[] counts, int size, long other) {
+        int[] keptColors = Arrays.copyOf(colors, size);
+        long[] keptCounts = Arrays.copyOf(counts, size);
+        //insertion sort, most common first
+        for (int i = 1; i < size; i++) {
+            int color = keptColors[i];
+            long count = keptCounts[i];
+            int j = i;
+            while (j > 0 && keptCounts[j - 1] < count) {
+                keptColors[j] = keptColors[j - 1];
+                keptCounts[j] = keptCounts[j - 1];
+                j--;
+            }
+            keptColors[j] = color;
+            keptCounts[j] = count;
+        }
+        return new ColorCounts(keptColors, keptCounts, other);
+    }
+
+    /**
+     * Returns the summary of the union of four disjoint regions.
+     *
+     * @param a the first region
+     * @param b the second region
+     * @param c the third region
+     * @param d the fourth region
+     * @return the merged summary
+     */
+    public static ColorCounts merge(ColorCounts a, ColorCounts b, ColorCounts c, ColorCounts d) {
+        int[] colors = new int[CAPACITY * 4];
+        long[] counts = new long[CAPACITY * 4];
+        int size = 0;
+        long other = 0;
+        for (ColorCounts part : new ColorCounts[] {a, b, c, d}) {
+            other += part.other;
+            for (int i = 0; i < part.colors.length; i++) {
+                int j = 0;
+                while (j < size && colors[j] != part.colors[i]) {
+                    j++;
+                }
+                if (j == size) {
+                    colors[size++] = part.colors[i];
+                }
+                counts[j] += part.counts[i];
+            }
+        }
+        //keep the most common colors, fold the rest into other
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (x, y) -> Long.compare(counts[y], counts[x]));
+        int kept = Math.min(size, CAPACITY);
+        int[] keptColors = new int[kept];
+        long[] keptCounts = new long[kept];
+        for (int i = 0; i < size; i++) {
+            if (i < kept) {
+                keptColors[i] = colors[order[i]];
+                keptCounts[i] = counts[order[i]];
+            } else {
+                other += counts[order[i]];
+            }
+        }
+        return new ColorCounts(keptColors, keptCounts, other);
+    }
+
+    /**
+     * Returns {@code true} if every pixel of the region is accounted to its color.
+     *
+     * @return {@code true} if the summary is exact
+     */
+    public boolean isExact() {
+        return other == 0;
+    }
+
+    /**
+     * Returns the number of distinct colors kept by this summary.
+     *
+     * @return the number of colors
+     */
+    public int size() {
+        return colors.length;
+    }
+
+    /**
+     * Returns the {@code i}-th most common color.
+     *
+     * @param i the rank, starting at {@code 0}
+     * @return the color
+     */
+    public int getColor(int i) {
+        return colors[i];
+    }
+
+    /**
+     * Returns the pixel count of the {@code i}-th most common color.
+     *
+     * @param i the rank, starting at {@code 0}
+     * @return the number of pixels
+     */
+    public long getCount(int i) {
+        return counts[i];
+    }
+
+    /**
+     * Returns the number of pixels of {@code color}, or {@code 0} if it is not kept.
+     *
+     * @param color the color
+     * @return the number of pixels
+     */
+    public long countOf(int color) {
+        for (int i = 0; i < colors.length; i++) {
+            if (colors[i] == color) {
+                return counts[i];
+            }
+        }
+        return 0;
+    }
+}
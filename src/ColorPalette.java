@@ -0,0 +1,87 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A shared color table that maps the distinct colors of an image to small integer indices.
+ * <p/>
+ * Indices are handed out in the order colors are first seen and never change, so an index stored
+ * by a leaf stays valid for the lifetime of the palette. The palette reports the narrowest index
+ * width (8, 16 or 32 bits) able to address every color it currently holds.
+ *
+ * @author Darshan
+ */
+public class ColorPalette {
+
+    private int[] colors;
+    private int size;
+    private final Map<Integer, Integer> indices;
+
+    public ColorPalette() {
+        colors = new int[16];
+        size = 0;
+        indices = new HashMap<>();
+    }
+
+    /**
+     * Returns the index of {@code color}, adding it to the palette if it is not present yet.
+     *
+     * @param color the color
+     * @return the palette index of the color
+     */
+    public int indexOf(int color) {
+        Integer index = indices.get(color);
+        if (index != null) {
+            return index;
+        }
+        if (size == colors.length) {
+            colors = Arrays.copyOf(colors, size * 2);
+        }
+        colors[size] = color;
+        indices.put(color, size);
+        return size++;
+    }
+
+    /**
+     * Returns {@code true} if the palette already holds {@code color}.
+     *
+     * @param color the color
+     * @return {@code true} if the color has an index
+     */
+    public boolean contains(int color) {
+        return indices.containsKey(color);
+    }
+
+    /**
+     * Returns the color stored at {@code index}.
+     *
+     * @param index the palette index
+     * @return the color
+     * @throws IllegalArgumentException if {@code index} is out of bounds
+     */
+    public int getColor(int index) {
+        if (index < 0 || index >= size) {
+            throw new IllegalArgumentException();
+        }
+        return colors[index];
+    }
+
+    /**
+     * Returns the number of colors in the palette.
+     *
+     * @return the number of colors
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of bits needed to store any index of this palette: {@code 8}, {@code 16}
+     * or {@code 32}.
+     *
+     * @return the index width in bits
+     */
+    public int getIndexWidth() {
+        return PackedIndexArray.widthFor(size - 1);
+    }
+}
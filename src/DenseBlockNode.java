@@ -0,0 +1,329 @@
+import java.util.Arrays;
+
+/**
+ * A square block of pixels stored as a packed {@code int[]} instead of a subtree of
+ * {@link QuadNodeImpl}s.
+ * <p/>
+ * {@link QuadTreeImpl} keeps the blocks at the bottom of the tree that do not compress in this
+ * form, since a {@link QuadNodeImpl} costs as much memory as several pixels. To everything that
+ * walks the tree through {@link QuadNode} the block still looks like the subtree it replaces: a
+ * block is a leaf when all of its pixels are equal, and {@link #getQuadrant} returns views of its
+ * quadrants that share the same array. Writing through {@link #setColor} on a uniform view fills
+ * that part of the array.
+ *
+ * @author Darshan
+ */
+class DenseBlockNode implements QuadNode {
+
+    private static final long NO_AVERAGE = -1;
+
+    private final int[] pixels;
+    private final int stride;
+    private final int offset;
+    private final int dimension;
+    //the block that owns the array, which caches its average for the parent node
+    private final DenseBlockNode owner;
+    //depth of this view below the owner and its index on that level, in quadrant order
+    private final int level;
+    private final int index;
+    //the cached average in the low 32 bits, or NO_AVERAGE; a single volatile field keeps
+    //concurrent readers from seeing a valid flag without its value
+    private volatile long average = NO_AVERAGE;
+    //the cached color counts, or null until they are asked for
+    private volatile ColorCounts counts;
+    //one bit per square of the owner larger than a pixel, level by level, set if the square is
+    //uniform, or null until a view asks
+    private volatile long[] uniform;
+
+    private DenseBlockNode(int[] pixels, int stride, int offset, int dimension,
+            DenseBlockNode owner, int level, int index) {
+        this.pixels = pixels;
+        this.stride = stride;
+        this.offset = offset;
+        this.dimension = dimension;
+        this.owner = owner == null ? this : owner;
+        this.level = level;
+        this.index = index;
+    }
+
+    /**
+     * Copies the {@code dimension x dimension} block of {@code img} with top left corner
+     * {@code (x, y)}.
+     */
+    static DenseBlockNode of(int[][] img, int x, int y, int dimension) {
+        int[] pixels = new int[dimension * dimension];
+        for (int row = 0; row < dimension; row++) {
+            System.arraycopy(img[y + row], x, pixels, row * dimension, dimension);
+        }
+        return new DenseBlockNode(pixels, dimension, 0, dimension, null, 0, 0);
+    }
+
+    /**
+     * Rasterizes the subtree below {@code node}.
+     */
+    static DenseBlockNode of(QuadNode node) {
+        int dimension = node.getDimension();
+        DenseBlockNode block = new DenseBlockNode(new int[dimension * dimension], dimension, 0,
+                dimension, null, 0, 0);
+        block.paint(0, 0, node);
+        return block;
+    }
+
+    //pixel access in coordinates relative to the block
+    int get(int x, int y) {
+        return pixels[offset + y * stride + x];
+    }
+
+    void set(int x, int y, int color) {
+        pixels[offset + y * stride + x] = color;
+        invalidateSummaries();
+    }
+
+    void fill(int x, int y, int width, int height, int color) {
+        invalidateSummaries();
+        for (int row = y; row < y + height; row++) {
+            int start = offset + row * stride + x;
+            Arrays.fill(pixels, start, start + width, color);
+        }
+    }
+
+    //draws the subtree below node with its top left corner at (x, y)
+    void paint(int x, int y, QuadNode node) {
+        int size = node.getDimension();
+        if (node.isLeaf()) {
+            fill(x, y, size, size, node.getColor());
+            return;
+        }
+        int half = size / 2;
+        paint(x, y, node.getQuadrant(QuadNode.QuadName.TOP_LEFT));
+        paint(x + half, y, node.getQuadrant(QuadNode.QuadName.TOP_RIGHT));
+        paint(x, y + half, node.getQuadrant(QuadNode.QuadName.BOTTOM_LEFT));
+        paint(x + half, y + half, node.getQuadrant(QuadNode.QuadName.BOTTOM_RIGHT));
+    }
+
+    //copies the block into arr with its top left corner at (x, y)
+    void copyTo(int[][] arr, int x, int y) {
+        for (int row = 0; row < dimension; row++) {
+            System.arraycopy(pixels, offset + row * stride, arr[y + row], x, dimension);
+        }
+    }
+
+    //copies length pixels of row y starting at x into out
+    void copyRow(int x, int y, int length, int[] out, int outOffset) {
+        System.arraycopy(pixels, offset + y * stride + x, out, outOffset, length);
+    }
+
+    /**
+     * Counts the colors of the block in one pass over its pixels. Colors beyond the first
+     * {@link ColorCounts#CAPACITY} are only counted in total, so the summary is exact only for
+     * blocks with few colors. The block owning the array caches the result until it is written.
+     */
+    ColorCounts getColorCounts() {
+        if (owner != this) {
+            return countColors();
+        }
+        ColorCounts cached = counts;
+        if (cached == null) {
+            cached = countColors();
+            counts = cached;
+        }
+        return cached;
+    }
+
+    @Override
+    public int getColor() {
+        if (!isLeaf()) {
+            throw new IllegalStateException("Node is not a leaf");
+        }
+        return pixels[offset];
+    }
+
+    @Override
+    public void setColor(int color) {
+        if (!isLeaf()) {
+            throw new IllegalStateException();
+        }
+        fill(0, 0, dimension, dimension, color);
+    }
+
+    /**
+     * Computed level by level like the averages kept by {@link QuadNodeImpl}, so both forms of a
+     * block report the same value. The block owning the array caches its result, since the
+     * parent node asks all four of its children whenever one of them changes.
+     */
+    @Override
+    public int getAverageColor() {
+        if (owner != this) {
+            return averageOf(offset, dimension);
+        }
+        long cached = average;
+        if (cached == NO_AVERAGE) {
+            cached = averageOf(offset, dimension) & 0xFFFFFFFFL;
+            average = cached;
+        }
+        return (int) cached;
+    }
+
+    @Override
+    public QuadNode getQuadrant(QuadName quadrant) {
+        if (isLeaf()) {
+            return null;
+        }
+        int half = dimension / 2;
+        int start = offset;
+        int child = index * 4;
+        if (quadrant == QuadNode.QuadName.TOP_RIGHT
+                || quadrant == QuadNode.QuadName.BOTTOM_RIGHT) {
+            start += half;
+            child += 1;
+        }
+        if (quadrant == QuadNode.QuadName.BOTTOM_LEFT
+                || quadrant == QuadNode.QuadName.BOTTOM_RIGHT) {
+            start += half * stride;
+            child += 2;
+        }
+        return new DenseBlockNode(pixels, stride, start, half, owner, level + 1, child);
+    }
+
+    /**
+     * Answered from a map of the uniform squares of the whole block, which the owner builds in
+     * one pass over its pixels and keeps until it is written, so walking the block through
+     * {@link #getQuadrant} does not rescan it at every level.
+     */
+    @Override
+    public boolean isLeaf() {
+        if (dimension == 1) {
+            return true;
+        }
+        long[] bits = owner.uniformSquares();
+        int bit = squaresAbove(level) + index;
+        return (bits[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    @Override
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Counts the nodes of the equivalent subtree, not the objects in memory.
+     */
+    @Override
+    public int getSize() {
+        return countNodes(offset, dimension);
+    }
+
+    @Override
+    public void setQuadrant(QuadName quadrant, QuadNode value) {
+        throw new UnsupportedOperationException();
+    }
+
+    //helper methods
+
+    //reading first keeps repeated edits from paying for a volatile write each
+    private void invalidateSummaries() {
+        if (owner.average != NO_AVERAGE) {
+            owner.average = NO_AVERAGE;
+        }
+        if (owner.counts != null) {
+            owner.counts = null;
+        }
+        if (owner.uniform != null) {
+            owner.uniform = null;
+        }
+    }
+
+    //number of squares on the levels above level, where level 0 is the whole block
+    private static int squaresAbove(int level) {
+        return ((1 << (2 * level)) - 1) / 3;
+    }
+
+    private long[] uniformSquares() {
+        long[] bits = uniform;
+        if (bits == null) {
+            int squares = squaresAbove(Integer.numberOfTrailingZeros(dimension));
+            bits = new long[(squares + 63) / 64];
+            markUniform(bits, 0, 0, offset, dimension);
+            uniform = bits;
+        }
+        return bits;
+    }
+
+    //sets the bits of the uniform squares within the square at level and index, bottom up, and
+    //returns whether that square is uniform
+    private boolean markUniform(long[] bits, int level, int index, int start, int size) {
+        if (size == 1) {
+            return true;
+        }
+        int half = size / 2;
+        int bottom = start + half * stride;
+        //not short-circuited, every quadrant has to be marked
+        boolean same = markUniform(bits, level + 1, index * 4, start, half)
+                & markUniform(bits, level + 1, index * 4 + 1, start + half, half)
+                & markUniform(bits, level + 1, index * 4 + 2, bottom, half)
+                & markUniform(bits, level + 1, index * 4 + 3, bottom + half, half);
+        int color = pixels[start];
+        if (same && pixels[start + half] == color && pixels[bottom] == color
+                && pixels[bottom + half] == color) {
+            int bit = squaresAbove(level) + index;
+            bits[bit >>> 6] |= 1L << bit;
+            return true;
+        }
+        return false;
+    }
+
+    private ColorCounts countColors() {
+        int[] colors = new int[ColorCounts.CAPACITY];
+        long[] totals = new long[ColorCounts.CAPACITY];
+        int size = 0;
+        long other = 0;
+        for (int row = 0; row < dimension; row++) {
+            int start = offset + row * stride;
+            for (int i = start; i < start + dimension; i++) {
+                int j = 0;
+                while (j < size && colors[j] != pixels[i]) {
+                    j++;
+                }
+                if (j < size) {
+                    totals[j]++;
+                } else if (size < colors.length) {
+                    colors[size] = pixels[i];
+                    totals[size++] = 1;
+                } else {
+                    other++;
+                }
+            }
+        }
+        return ColorCounts.of(colors, totals, size, other);
+    }
+
+    //averaging four equal colors gives the same color, so uniform parts need no special case
+    private int averageOf(int start, int size) {
+        if (size == 1) {
+            return pixels[start];
+        }
+        int half = size / 2;
+        int bottom = start + half * stride;
+        return QuadNodeImpl.averageColor(averageOf(start, half), averageOf(start + half, half),
+                averageOf(bottom + half, half), averageOf(bottom, half));
+    }
+
+    //counts the nodes of the block starting at start bottom up, without creating any views
+    private int countNodes(int start, int size) {
+        if (size == 1) {
+            return 1;
+        }
+        int half = size / 2;
+        int topLeft = countNodes(start, half);
+        int topRight = countNodes(start + half, half);
+        int bottomLeft = countNodes(start + half * stride, half);
+        int bottomRight = countNodes(start + half * stride + half, half);
+        int color = pixels[start];
+        if (topLeft == 1 && topRight == 1 && bottomLeft == 1 && bottomRight == 1
+                && pixels[start + half] == color && pixels[start + half * stride] == color
+                && pixels[start + half * stride + half] == color) {
+            return 1;
+        }
+        return 1 + topLeft + topRight + bottomLeft + bottomRight;
+    }
+}
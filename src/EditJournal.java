@@ -0,0 +1,334 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of edits to a {@link QuadTree}, backed by a checkpoint of the whole tree.
+ * <p/>
+ * The journal keeps two files in its directory: {@code checkpoint.qt} holds a tree serialized
+ * with {@link QuadTreeCodec}, and {@code edits.log} holds the edits made since, each as a small
+ * fixed size record protected by a CRC32. Records are buffered in memory and only reach the disk
+ * on {@link #commit()}, which writes and forces the whole group with a single
+ * {@link FileChannel#force(boolean)}, so the cost of the sync is shared by every edit in the group.
+ * <p/>
+ * {@link #checkpoint(QuadTree)} writes the tree to a temporary file, moves it over the old
+ * checkpoint and then truncates the log. Both files carry a generation number that is bumped by
+ * every checkpoint, and the log is only replayed when its generation matches the checkpoint's, so
+ * a crash between the move and the truncation cannot apply the same edits twice. A record cut
+ * short by a crash fails its length or CRC check during {@link #recover()}, which stops the replay
+ * there and truncates the torn tail.
+ * <p/>
+ * The journal is not thread-safe.
+ *
+ * @author Darshan
+ */
+public class EditJournal implements Closeable {
+
+    static final int MAGIC = 0x5154454A;
+
+    static final String CHECKPOINT = "checkpoint.qt";
+    static final String LOG = "edits.log";
+
+    private static final byte SET_COLOR = 0;
+    private static final byte FILL_RECT = 1;
+    private static final byte FLOOD_FILL = 2;
+
+    //magic and generation
+    private static final int HEADER_SIZE = 12;
+    //type, five ints and the CRC of the record
+    private static final int RECORD_SIZE = 1 + 5 * 4 + 4;
+
+    private final Path directory;
+    private final FileChannel log;
+    private final ByteBuffer pending;
+    private final CRC32 crc = new CRC32();
+    private long generation;
+    private long logSize;
+    private int pendingRecords;
+
+    private EditJournal(Path directory, FileChannel log, long generation, long logSize,
+            int groupSize) {
+        this.directory = directory;
+        this.log = log;
+        this.generation = generation;
+        this.logSize = logSize;
+        this.pending = ByteBuffer.allocate(groupSize * RECORD_SIZE);
+    }
+
+    /**
+     * Opens the journal in {@code directory}, creating the directory if it does not exist. Edits
+     * are committed automatically whenever {@code groupSize} of them are pending.
+     *
+     * @param directory the directory holding the journal files
+     * @param groupSize the maximum number of edits held in memory before a commit
+     * @return the open journal
+     * @throws IOException if the files cannot be opened
+     * @throws IllegalArgumentException if {@code directory} is null or {@code groupSize} is not
+     * positive
+     */
+    public static EditJournal open(Path directory, int groupSize) throws IOException {
+        if (directory == null || groupSize <= 0) {
+            throw new IllegalArgumentException();
+        }
+        Files.createDirectories(directory);
+        long generation = 0;
+        Path checkpoint = directory.resolve(CHECKPOINT);
+        if (Files.exists(checkpoint)) {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(checkpoint))) {
+                generation = in.readLong();
+            }
+        }
+        FileChannel log = FileChannel.open(directory.resolve(LOG), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new EditJournal(directory, log, generation, log.size(), groupSize);
+    }
+
+    /**
+     * Returns {@code true} if the directory holds a checkpoint that {@link #recover()} can load.
+     *
+     * @return {@code true} if a checkpoint exists
+     */
+    public boolean hasCheckpoint() {
+        return Files.exists(directory.resolve(CHECKPOINT));
+    }
+
+    /**
+     * Records a call to {@link QuadTree#setColor(int, int, int)}.
+     *
+     * @param x the {@code x}-coordinate
+     * @param y the {@code y}-coordinate
+     * @param color the color
+     * @throws IOException if a full group cannot be committed
+     */
+    public void logSetColor(int x, int y, int color) throws IOException {
+        append(SET_COLOR, x, y, 0, 0, color);
+    }
+
+    /**
+     * Records a call to {@link QuadTree#fillRect(int, int, int, int, int)}.
+     *
+     * @param x the {@code x}-coordinate of the left edge
+     * @param y the {@code y}-coordinate of the top edge
+     * @param width the width of the rectangle
+     * @param height the height of the rectangle
+     * @param color the color
+     * @throws IOException if a full group cannot be committed
+     */
+    public void logFillRect(int x, int y, int width, int height, int color) throws IOException {
+        append(FILL_RECT, x, y, width, height, color);
+    }
+
+    /**
+     * Records a call to {@link QuadTree#floodFill(int, int, int)}. Replaying it is only correct
+     * because the log is always replayed in order onto the checkpoint it was written against.
+     *
+     * @param x the {@code x}-coordinate of the seed pixel
+     * @param y the {@code y}-coordinate of the seed pixel
+     * @param color the new color of the region
+     * @throws IOException if a full group cannot be committed
+     */
+    public void logFloodFill(int x, int y, int color) throws IOException {
+        append(FLOOD_FILL, x, y, 0, 0, color);
+    }
+
+    /**
+     * Writes all pending edits to the log and forces them to the disk. Edits that were logged
+     * before this method returns survive a crash.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    public void commit() throws IOException {
+        if (pendingRecords == 0) {
+            return;
+        }
+        if (logSize == 0) {
+            writeHeader();
+        }
+        pending.flip();
+        while (pending.hasRemaining()) {
+            logSize += log.write(pending, logSize);
+        }
+        pending.clear();
+        pendingRecords = 0;
+        log.force(false);
+    }
+
+    /**
+     * Returns the number of edits that have been logged but not committed yet.
+     *
+     * @return the number of pending edits
+     */
+    public int getPendingCount() {
+        return pendingRecords;
+    }
+
+    /**
+     * Returns the size of the log on disk in bytes, not counting pending edits.
+     *
+     * @return the size of the log
+     */
+    public long getLogSize() {
+        return logSize;
+    }
+
+    /**
+     * Makes {@code tree} the new checkpoint and empties the log. The tree must already contain
+     * every logged edit; pending edits are committed first so that a crash while writing the
+     * checkpoint still leaves the old checkpoint and a complete log behind.
+     *
+     * @param tree the current state of the image
+     * @throws IOException if the checkpoint cannot be written
+     * @throws IllegalArgumentException if {@code tree} is null
+     */
+    public void checkpoint(QuadTree tree) throws IOException {
+        if (tree == null) {
+            throw new IllegalArgumentException();
+        }
+        commit();
+        long next = generation + 1;
+        Path temp = directory.resolve(CHECKPOINT + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeLong(next);
+            QuadTreeCodec.write(tree, out);
+            out.flush();
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, directory.resolve(CHECKPOINT), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, directory.resolve(CHECKPOINT), StandardCopyOption.REPLACE_EXISTING);
+        }
+        forceDirectory();
+        //from here on the old log no longer matches the checkpoint and would be skipped
+        generation = next;
+        log.truncate(0);
+        logSize = 0;
+        log.force(true);
+    }
+
+    /**
+     * Loads the checkpoint and replays the committed edits onto it. A torn record at the end of
+     * the log, left by a crash during a commit, is dropped together with everything after it.
+     *
+     * @return the recovered tree
+     * @throws IOException if there is no checkpoint or it cannot be read
+     */
+    public QuadTree recover() throws IOException {
+        QuadTree tree;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(directory.resolve(CHECKPOINT))))) {
+            generation = in.readLong();
+            tree = QuadTreeCodec.read(in);
+        }
+        pending.clear();
+        pendingRecords = 0;
+        long valid = replay(tree);
+        if (valid < log.size()) {
+            log.truncate(valid);
+            log.force(true);
+        }
+        logSize = valid;
+        return tree;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            commit();
+        } finally {
+            log.close();
+        }
+    }
+
+    //helper methods
+    private void append(byte type, int a, int b, int c, int d, int e) throws IOException {
+        if (!pending.hasRemaining()) {
+            commit();
+        }
+        int start = pending.position();
+        pending.put(type).putInt(a).putInt(b).putInt(c).putInt(d).putInt(e);
+        crc.reset();
+        crc.update(pending.array(), start, RECORD_SIZE - 4);
+        pending.putInt((int) crc.getValue());
+        pendingRecords++;
+        if (!pending.hasRemaining()) {
+            commit();
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putLong(generation).flip();
+        while (header.hasRemaining()) {
+            logSize += log.write(header, logSize);
+        }
+    }
+
+    //applies the log to tree and returns the length of its valid prefix
+    private long replay(QuadTree tree) throws IOException {
+        long size = log.size();
+        if (size < HEADER_SIZE) {
+            return 0;
+        }
+        InputStream stream = new BufferedInputStream(Channels.newInputStream(log.position(0)));
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC || in.readLong() != generation) {
+            //written against an older checkpoint that already contains these edits
+            return 0;
+        }
+        long valid = HEADER_SIZE;
+        byte[] record = new byte[RECORD_SIZE];
+        while (valid + RECORD_SIZE <= size) {
+            in.readFully(record);
+            crc.reset();
+            crc.update(record, 0, RECORD_SIZE - 4);
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            if (buffer.getInt(RECORD_SIZE - 4) != (int) crc.getValue()) {
+                break;
+            }
+            byte type = buffer.get();
+            int a = buffer.getInt();
+            int b = buffer.getInt();
+            int c = buffer.getInt();
+            int d = buffer.getInt();
+            int e = buffer.getInt();
+            if (type == SET_COLOR) {
+                tree.setColor(a, b, e);
+            } else if (type == FILL_RECT) {
+                tree.fillRect(a, b, c, d, e);
+            } else if (type == FLOOD_FILL) {
+                tree.floodFill(a, b, e);
+            } else {
+                break;
+            }
+            valid += RECORD_SIZE;
+        }
+        return valid;
+    }
+
+    //makes the rename durable where the platform allows syncing a directory
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            //not supported on every platform, the rename is still atomic
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Command line benchmark comparing {@link QuadTreeCodec} and {@link EntropyQuadTreeCodec} on
+ * synthetic images. Prints the serialized size of both formats and the encode and decode
+ * throughput, measured in megabytes of raw 32-bit pixels per second.
+ * <p/>
+ * Usage: {@code java EntropyCodecBenchmark [dimension] [iterations]}
+ *
+ * @author Darshan
+ */
+public class EntropyCodecBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int dimension = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        QuadTreeFactory factory = new QuadTreeFactoryImpl();
+        run("ui", factory.buildFromIntArray(uiImage(dimension)), iterations);
+        run("noisy", factory.buildFromIntArray(noisyImage(dimension)), iterations);
+    }
+
+    private static void run(String name, QuadTree tree, int iterations) throws IOException {
+        double rawMegabytes = 4.0 * tree.getDimension() * tree.getDimension() / (1 << 20);
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        QuadTreeCodec.write(tree, plain);
+        byte[] encoded = null;
+        long encodeNanos = 0;
+        long decodeNanos = 0;
+        //the first round only warms up the JIT
+        for (int i = 0; i <= iterations; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long start = System.nanoTime();
+            EntropyQuadTreeCodec.write(tree, out);
+            long middle = System.nanoTime();
+            EntropyQuadTreeCodec.read(new ByteArrayInputStream(out.toByteArray()));
+            long end = System.nanoTime();
+            if (i > 0) {
+                encodeNanos += middle - start;
+                decodeNanos += end - middle;
+            }
+            encoded = out.toByteArray();
+        }
+        System.out.printf("%-6s nodes=%d plain=%d bytes entropy=%d bytes (%.1f%%)%n", name,
+                tree.getRoot().getSize(), plain.size(), encoded.length,
+                100.0 * encoded.length / plain.size());
+        System.out.printf("%-6s encode %.1f MB/s, decode %.1f MB/s%n", name,
+                rawMegabytes * iterations / (encodeNanos / 1e9),
+                rawMegabytes * iterations / (decodeNanos / 1e9));
+    }
+
+    //flat panels and buttons with a few hundred colors, like a screenshot
+    private static int[][] uiImage(int dimension) {
+        Random random = new Random(42);
+        int[][] img = new int[dimension][dimension];
+        int[] colors = new int[300];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = random.nextInt(0x1000000);
+        }
+        for (int i = 0; i < dimension / 2; i++) {
+            int w = 1 + random.nextInt(dimension / 4);
+            int h = 1 + random.nextInt(dimension / 8);
+            int x = random.nextInt(dimension - w);
+            int y = random.nextInt(dimension - h);
+            int color = colors[random.nextInt(colors.length)];
+            for (int row = y; row < y + h; row++) {
+                for (int col = x; col < x + w; col++) {
+                    img[row][col] = color;
+                }
+            }
+        }
+        return img;
+    }
+
+    //a smooth gradient with light noise, like a photograph
+    private static int[][] noisyImage(int dimension) {
+        Random random = new Random(7);
+        int[][] img = new int[dimension][dimension];
+        for (int y = 0; y < dimension; y++) {
+            for (int x = 0; x < dimension; x++) {
+                int value = (x + y) * 255 / (2 * dimension) + random.nextInt(4);
+                img[y][x] = value * 0x010101;
+            }
+        }
+        return img;
+    }
+}
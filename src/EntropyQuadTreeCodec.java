@@ -0,0 +1,174 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Entropy-coded variant of the depth-first {@link QuadTreeCodec} format.
+ * <p/>
+ * The nodes are visited in the same pre-order, but instead of flag bytes and palette indices every
+ * decision is coded with an adaptive {@link RangeEncoder}:
+ * <ul>
+ * <li>the leaf/internal flag is modelled per level and per whether the previous sibling was a
+ * leaf (nodes of dimension 1 are always leaves and cost nothing),</li>
+ * <li>a leaf color is first looked up in a move-to-front list of the 8 most recent leaf colors,
+ * whose head is the previous sibling's color, with the hit flag and position modelled per
+ * level,</li>
+ * <li>colors missing from that list are coded byte by byte with one adaptive model per byte.</li>
+ * </ul>
+ * Both directions stream: the encoder writes output as soon as it is final and the decoder pulls
+ * input on demand.
+ *
+ * @author Darshan
+ */
+public final class EntropyQuadTreeCodec {
+
+    static final int MAGIC = 0x51544543;
+
+    private static final int LEVELS = 32;
+    private static final int RECENT = 8;
+    private static final int NO_SIBLING = 2;
+
+    private EntropyQuadTreeCodec() {
+    }
+
+    /**
+     * Writes {@code tree} to {@code out}. The stream is flushed but not closed.
+     *
+     * @param tree the tree to serialize
+     * @param out the destination
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if {@code tree} is null
+     */
+    public static void write(QuadTree tree, OutputStream out) throws IOException {
+        if (tree == null) {
+            throw new IllegalArgumentException();
+        }
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(tree.getDimension());
+        data.flush();
+        RangeEncoder encoder = new RangeEncoder(out);
+        encodeNode(tree.getRoot(), 0, NO_SIBLING, encoder, new Models());
+        encoder.finish();
+    }
+
+    /**
+     * Reads a tree written by {@link #write}.
+     *
+     * @param in the source
+     * @return the decoded tree
+     * @throws IOException if reading fails or the stream is not an entropy coded tree
+     */
+    public static QuadTree read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not an entropy coded QuadTree");
+        }
+        int dimension = data.readInt();
+        if (dimension <= 0 || Integer.bitCount(dimension) != 1) {
+            throw new IOException("Invalid dimension " + dimension);
+        }
+        RangeDecoder decoder = new RangeDecoder(in);
+        return new QuadTreeImpl(decodeNode(dimension, 0, NO_SIBLING, decoder, new Models()));
+    }
+
+    //helper methods
+    private static void encodeNode(QuadNode node, int level, int sibling, RangeEncoder encoder,
+            Models models) throws IOException {
+        int context = level * 3 + sibling;
+        if (node.getDimension() > 1) {
+            encoder.encodeBit(models.structure, context, node.isLeaf() ? 1 : 0);
+        }
+        if (node.isLeaf()) {
+            int color = node.getColor();
+            int index = models.find(color);
+            encoder.encodeBit(models.hit, context, index >= 0 ? 1 : 0);
+            if (index >= 0) {
+                encoder.encodeTree(models.position, level * RECENT, 3, index);
+                models.moveToFront(index);
+            } else {
+                for (int b = 3; b >= 0; b--) {
+                    encoder.encodeTree(models.literal, b * 256, 8, (color >>> (b * 8)) & 0xFF);
+                }
+                models.push(color);
+            }
+            return;
+        }
+        int childSibling = NO_SIBLING;
+        for (QuadNode.QuadName quadrant : QuadNode.QuadName.values()) {
+            QuadNode child = node.getQuadrant(quadrant);
+            encodeNode(child, level + 1, childSibling, encoder, models);
+            childSibling = child.isLeaf() ? 1 : 0;
+        }
+    }
+
+    private static QuadNode decodeNode(int dimension, int level, int sibling,
+            RangeDecoder decoder, Models models) throws IOException {
+        int context = level * 3 + sibling;
+        boolean leaf = dimension == 1 || decoder.decodeBit(models.structure, context) == 1;
+        if (leaf) {
+            int color;
+            if (decoder.decodeBit(models.hit, context) == 1) {
+                int index = decoder.decodeTree(models.position, level * RECENT, 3);
+                if (index >= models.count) {
+                    throw new IOException("Corrupt color reference at level " + level);
+                }
+                color = models.recent[index];
+                models.moveToFront(index);
+            } else {
+                color = 0;
+                for (int b = 3; b >= 0; b--) {
+                    color |= decoder.decodeTree(models.literal, b * 256, 8) << (b * 8);
+                }
+                models.push(color);
+            }
+            return new QuadNodeImpl(dimension, color);
+        }
+        QuadNode node = new QuadNodeImpl(dimension);
+        int childSibling = NO_SIBLING;
+        for (QuadNode.QuadName quadrant : QuadNode.QuadName.values()) {
+            QuadNode child = decodeNode(dimension / 2, level + 1, childSibling, decoder, models);
+            node.setQuadrant(quadrant, child);
+            childSibling = child.isLeaf() ? 1 : 0;
+        }
+        return node;
+    }
+
+    /**
+     * Adaptive state shared by the encoder and decoder, which evolve it identically.
+     */
+    private static class Models {
+
+        private final short[] structure = RangeEncoder.newModel(LEVELS * 3);
+        private final short[] hit = RangeEncoder.newModel(LEVELS * 3);
+        private final short[] position = RangeEncoder.newModel(LEVELS * RECENT);
+        private final short[] literal = RangeEncoder.newModel(4 * 256);
+        private final int[] recent = new int[RECENT];
+        private int count;
+
+        int find(int color) {
+            for (int i = 0; i < count; i++) {
+                if (recent[i] == color) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        void moveToFront(int index) {
+            int color = recent[index];
+            System.arraycopy(recent, 0, recent, 1, index);
+            recent[0] = color;
+        }
+
+        void push(int color) {
+            if (count < RECENT) {
+                count++;
+            }
+            System.arraycopy(recent, 0, recent, 1, count - 1);
+            recent[0] = color;
+        }
+    }
+}
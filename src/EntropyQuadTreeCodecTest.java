@@ -0,0 +1,53 @@
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class EntropyQuadTreeCodecTest {
+
+    private static byte[] encode(QuadTree tree) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EntropyQuadTreeCodec.write(tree, out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testWriteRead() throws IOException {
+        Random random = new Random(1);
+        for (int dimension = 1; dimension <= 64; dimension *= 2) {
+            int[][] img = new int[dimension][dimension];
+            for (int y = 0; y < dimension; y++) {
+                for (int x = 0; x < dimension; x++) {
+                    img[y][x] = random.nextInt(4) == 0 ? random.nextInt() : (x / 8) * 0x111111;
+                }
+            }
+            QuadTree tree = new QuadTreeImpl(img);
+            QuadTree read = EntropyQuadTreeCodec.read(new ByteArrayInputStream(encode(tree)));
+            assertArrayEquals(img, read.decompress());
+            assertEquals(tree.getRoot().getSize(), read.getRoot().getSize());
+        }
+    }
+
+    @Test
+    public void testSmallerThanPlainCodec() throws IOException {
+        int[][] img = new int[64][64];
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                img[y][x] = (x ^ y) % 3 == 0 ? 0xFFFFFF : 0x202020;
+            }
+        }
+        QuadTree tree = new QuadTreeImpl(img);
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        QuadTreeCodec.write(tree, plain);
+        assertTrue(encode(tree).length * 4 < plain.size());
+    }
+
+    @Test (expected = IOException.class)
+    public void testReadGarbage() throws IOException {
+        EntropyQuadTreeCodec.read(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5, 6, 7, 8}));
+    }
+}
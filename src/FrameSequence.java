@@ -0,0 +1,194 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A container for a sequence of equally sized frames stored as periodic keyframes plus
+ * {@link QuadTreeDelta}s against the previous frame.
+ * <p/>
+ * Every {@code keyframeInterval}-th frame is stored in full with {@link QuadTreeCodec}, the frames
+ * in between only store what changed. Decoding a frame starts at the nearest keyframe before it
+ * and applies the deltas that follow, so random access costs at most one keyframe decode plus
+ * {@code keyframeInterval - 1} deltas.
+ *
+ * @author Darshan
+ */
+public class FrameSequence {
+
+    static final int MAGIC = 0x51544653;
+
+    private static final int KEYFRAME = 0;
+    private static final int DELTA = 1;
+
+    private final int keyframeInterval;
+    private final List<byte[]> frames;
+    private QuadTree previous;
+    private int dimension;
+
+    /**
+     * Creates an empty sequence.
+     *
+     * @param keyframeInterval the number of frames between two keyframes, at least {@code 1}
+     * @throws IllegalArgumentException if {@code keyframeInterval} is less than {@code 1}
+     */
+    public FrameSequence(int keyframeInterval) {
+        if (keyframeInterval < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.keyframeInterval = keyframeInterval;
+        this.frames = new ArrayList<>();
+    }
+
+    /**
+     * Appends a frame to the sequence. The frame is encoded immediately, later changes to
+     * {@code frame} do not affect the sequence.
+     *
+     * @param frame the frame to append
+     * @throws IllegalArgumentException if {@code frame} is null or its dimension differs from the
+     * frames already in the sequence
+     */
+    public void addFrame(QuadTree frame) {
+        if (frame == null || (!frames.isEmpty() && frame.getDimension() != dimension)) {
+            throw new IllegalArgumentException();
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            if (isKeyframe(frames.size())) {
+                bytes.write(KEYFRAME);
+                QuadTreeCodec.write(frame, bytes);
+            } else {
+                bytes.write(DELTA);
+                QuadTreeDelta.diff(previous, frame).write(bytes);
+            }
+        } catch (IOException e) {
+            //ByteArrayOutputStream does not throw
+            throw new IllegalStateException(e);
+        }
+        frames.add(bytes.toByteArray());
+        dimension = frame.getDimension();
+        previous = new QuadTreeImpl(QuadTreeImpl.copyOf(frame.getRoot(), dimension));
+    }
+
+    /**
+     * Decodes the frame at {@code index}.
+     *
+     * @param index the frame number, starting at {@code 0}
+     * @return a newly decoded tree holding the frame
+     * @throws IllegalArgumentException if {@code index} is out of bounds
+     * @throws IllegalStateException if the stored frame data is corrupt
+     */
+    public QuadTree getFrame(int index) {
+        if (index < 0 || index >= frames.size()) {
+            throw new IllegalArgumentException();
+        }
+        int keyframe = index - index % keyframeInterval;
+        try {
+            QuadTree tree = QuadTreeCodec.read(payload(keyframe));
+            for (int i = keyframe + 1; i <= index; i++) {
+                QuadTreeDelta.read(payload(i)).apply(tree);
+            }
+            return tree;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the number of frames in the sequence.
+     *
+     * @return the number of frames
+     */
+    public int size() {
+        return frames.size();
+    }
+
+    /**
+     * Returns the number of bytes used by the encoded frame at {@code index}.
+     *
+     * @param index the frame number
+     * @return the encoded size in bytes
+     * @throws IllegalArgumentException if {@code index} is out of bounds
+     */
+    public int getEncodedSize(int index) {
+        if (index < 0 || index >= frames.size()) {
+            throw new IllegalArgumentException();
+        }
+        return frames.get(index).length;
+    }
+
+    /**
+     * Writes the whole sequence to {@code out}. The stream is flushed but not closed.
+     *
+     * @param out the destination
+     * @throws IOException if writing fails
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(keyframeInterval);
+        data.writeInt(frames.size());
+        for (byte[] frame : frames) {
+            data.writeInt(frame.length);
+            data.write(frame);
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a sequence written by {@link #write}. Appending to the returned sequence continues
+     * from its last frame.
+     *
+     * @param in the source
+     * @return the decoded sequence
+     * @throws IOException if reading fails or the stream is not a frame sequence
+     */
+    public static FrameSequence read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a serialized FrameSequence");
+        }
+        int keyframeInterval = data.readInt();
+        int count = data.readInt();
+        if (keyframeInterval < 1 || count < 0) {
+            throw new IOException("Corrupt FrameSequence header");
+        }
+        FrameSequence sequence = new FrameSequence(keyframeInterval);
+        for (int i = 0; i < count; i++) {
+            int length = data.readInt();
+            if (length < 1) {
+                throw new IOException("Corrupt frame " + i);
+            }
+            byte[] frame = new byte[length];
+            data.readFully(frame);
+            if (frame[0] != (sequence.isKeyframe(i) ? KEYFRAME : DELTA)) {
+                throw new IOException("Unexpected frame type for frame " + i);
+            }
+            sequence.frames.add(frame);
+        }
+        if (count > 0) {
+            try {
+                sequence.previous = sequence.getFrame(count - 1);
+            } catch (IllegalStateException e) {
+                throw new IOException(e.getCause());
+            }
+            sequence.dimension = sequence.previous.getDimension();
+        }
+        return sequence;
+    }
+
+    //helper methods
+    private boolean isKeyframe(int index) {
+        return index % keyframeInterval == 0;
+    }
+
+    private InputStream payload(int index) {
+        byte[] frame = frames.get(index);
+        return new ByteArrayInputStream(frame, 1, frame.length - 1);
+    }
+}
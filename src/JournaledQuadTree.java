@@ -0,0 +1,173 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * A {@link QuadTree} whose edits are made durable through an {@link EditJournal}.
+ * <p/>
+ * Every {@link #setColor}, {@link #fillRect} and {@link #floodFill} is applied to the wrapped tree
+ * and appended to the journal as a record of a few bytes. Records are group committed: they reach
+ * the disk when {@link #commit()} is called or when a group fills up. Once the log grows past the
+ * checkpoint threshold the whole tree is written as a new checkpoint and the log starts over, so
+ * recovery never has to replay more than one threshold worth of edits.
+ * <p/>
+ * Since {@link QuadTree} methods cannot throw checked exceptions, I/O errors are rethrown as
+ * {@link UncheckedIOException}.
+ *
+ * @author Darshan
+ */
+public class JournaledQuadTree implements QuadTree, Closeable {
+
+    private final QuadTree tree;
+    private final EditJournal journal;
+    private final long checkpointThreshold;
+
+    private JournaledQuadTree(QuadTree tree, EditJournal journal, long checkpointThreshold) {
+        this.tree = tree;
+        this.journal = journal;
+        this.checkpointThreshold = checkpointThreshold;
+    }
+
+    /**
+     * Opens the journal in {@code directory}. If it holds a checkpoint, the tree is recovered from
+     * the checkpoint and the committed tail of the log and {@code initial} is ignored. Otherwise
+     * {@code initial} becomes the first checkpoint.
+     *
+     * @param directory the directory holding the journal files
+     * @param initial the image to start from when the directory holds no checkpoint
+     * @param groupSize the maximum number of edits held in memory before a commit
+     * @param checkpointThreshold the log size in bytes that triggers a new checkpoint
+     * @return the journaled tree
+     * @throws IOException if the journal cannot be opened or recovered
+     * @throws IllegalArgumentException if {@code directory} or {@code initial} is null, or
+     * {@code groupSize} or {@code checkpointThreshold} is not positive
+     */
+    public static JournaledQuadTree open(Path directory, QuadTree initial, int groupSize,
+            long checkpointThreshold) throws IOException {
+        if (initial == null || checkpointThreshold <= 0) {
+            throw new IllegalArgumentException();
+        }
+        EditJournal journal = EditJournal.open(directory, groupSize);
+        QuadTree tree;
+        try {
+            if (journal.hasCheckpoint()) {
+                tree = journal.recover();
+            } else {
+                tree = initial;
+                journal.checkpoint(tree);
+            }
+        } catch (IOException e) {
+            journal.close();
+            throw e;
+        }
+        return new JournaledQuadTree(tree, journal, checkpointThreshold);
+    }
+
+    @Override
+    public void setColor(int x, int y, int color) {
+        tree.setColor(x, y, color);
+        try {
+            journal.logSetColor(x, y, color);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        checkpointIfNeeded();
+    }
+
+    @Override
+    public void fillRect(int x, int y, int width, int height, int color) {
+        tree.fillRect(x, y, width, height, color);
+        try {
+            journal.logFillRect(x, y, width, height, color);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        checkpointIfNeeded();
+    }
+
+    @Override
+    public void floodFill(int x, int y, int color) {
+        tree.floodFill(x, y, color);
+        try {
+            journal.logFloodFill(x, y, color);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        checkpointIfNeeded();
+    }
+
+    @Override
+    public int getColor(int x, int y) {
+        return tree.getColor(x, y);
+    }
+
+    @Override
+    public int getDimension() {
+        return tree.getDimension();
+    }
+
+    @Override
+    public int[][] decompress() {
+        return tree.decompress();
+    }
+
+    @Override
+    public double getCompressionRatio() {
+        return tree.getCompressionRatio();
+    }
+
+    @Override
+    public QuadNode getRoot() {
+        return tree.getRoot();
+    }
+
+    /**
+     * Forces every edit made so far to the disk.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    public void commit() throws IOException {
+        journal.commit();
+    }
+
+    /**
+     * Writes the current tree as a new checkpoint and empties the log.
+     *
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public void checkpoint() throws IOException {
+        journal.checkpoint(tree);
+    }
+
+    /**
+     * Returns the journal backing this tree.
+     *
+     * @return the journal
+     */
+    public EditJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Commits the pending edits and closes the journal. The tree must not be edited afterwards.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+
+    //helper methods
+    private void checkpointIfNeeded() {
+        if (journal.getLogSize() < checkpointThreshold) {
+            return;
+        }
+        try {
+            journal.checkpoint(tree);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JournaledQuadTreeTest {
+
+    Path directory;
+    int[][] img;
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal");
+        img = new int[][] {
+            {1, 1, 2, 2},
+            {1, 1, 2, 2},
+            {2, 3, 2, 3},
+            {3, 3, 1, 1}
+        };
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testRecoverCommittedEdits() throws IOException {
+        JournaledQuadTree tree = JournaledQuadTree.open(directory, new QuadTreeImpl(img), 16, 
+                1 << 20);
+        tree.setColor(0, 0, 5);
+        tree.fillRect(2, 0, 2, 2, 7);
+        tree.floodFill(0, 3, 9);
+        tree.commit();
+        int[][] expected = tree.decompress();
+        //uncommitted edits are lost
+        tree.setColor(3, 3, 4);
+        assertEquals(1, tree.getJournal().getPendingCount());
+        JournaledQuadTree recovered = JournaledQuadTree.open(directory, new QuadTreeImpl(img), 16,
+                1 << 20);
+        assertArrayEquals(expected, recovered.decompress());
+        recovered.close();
+    }
+
+    @Test
+    public void testCheckpointTruncatesLog() throws IOException {
+        JournaledQuadTree tree = JournaledQuadTree.open(directory, new QuadTreeImpl(img), 1, 
+                100);
+        for (int i = 0; i < 10; i++) {
+            tree.setColor(i % 4, i / 4, i);
+        }
+        assertTrue(tree.getJournal().getLogSize() < 100);
+        int[][] expected = tree.decompress();
+        tree.close();
+        JournaledQuadTree recovered = JournaledQuadTree.open(directory, 
+                new QuadTreeImpl(new int[4][4]), 1, 100);
+        assertArrayEquals(expected, recovered.decompress());
+        recovered.close();
+    }
+
+    @Test
+    public void testTornTail() throws IOException {
+        JournaledQuadTree tree = JournaledQuadTree.open(directory, new QuadTreeImpl(img), 1, 
+                1 << 20);
+        tree.setColor(0, 0, 5);
+        int[][] expected = tree.decompress();
+        tree.setColor(1, 1, 6);
+        tree.close();
+        Path log = directory.resolve(EditJournal.LOG);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        long torn = Files.size(log);
+        JournaledQuadTree recovered = JournaledQuadTree.open(directory, new QuadTreeImpl(img), 1,
+                1 << 20);
+        assertArrayEquals(expected, recovered.decompress());
+        assertTrue(Files.size(log) < torn);
+        //new edits go after the valid prefix
+        recovered.setColor(3, 0, 8);
+        recovered.close();
+        expected[0][3] = 8;
+        recovered = JournaledQuadTree.open(directory, new QuadTreeImpl(img), 1, 1 << 20);
+        assertArrayEquals(expected, recovered.decompress());
+        recovered.close();
+    }
+
+    @Test
+    public void testStaleLogIsSkipped() throws IOException {
+        JournaledQuadTree tree = JournaledQuadTree.open(directory, new QuadTreeImpl(img), 1, 
+                1 << 20);
+        tree.floodFill(0, 0, 3);
+        tree.commit();
+        byte[] staleLog = Files.readAllBytes(directory.resolve(EditJournal.LOG));
+        tree.checkpoint();
+        int[][] expected = tree.decompress();
+        tree.close();
+        //crash between moving the checkpoint and truncating the log
+        Files.write(directory.resolve(EditJournal.LOG), staleLog);
+        JournaledQuadTree recovered = JournaledQuadTree.open(directory, new QuadTreeImpl(img), 1,
+                1 << 20);
+        assertArrayEquals(expected, recovered.decompress());
+        recovered.close();
+    }
+}
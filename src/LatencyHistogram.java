@@ -0,0 +1,148 @@
+import java.util.Arrays;
+
+/**
+ * A histogram of non-negative {@code long} values, such as latencies in nanoseconds, with a
+ * bounded relative error, in the style of HdrHistogram.
+ * <p/>
+ * Values below {@code 128} are counted exactly. Larger values share a bucket with the values that
+ * agree with them in their seven highest bits, so every value is reported with an error below
+ * {@code 1/64} of itself. The whole range of {@code long} fits in a few thousand counters, and
+ * {@link #record(long)} never allocates, which keeps the recorder out of the latencies it measures.
+ *
+ * @author Darshan
+ */
+public class LatencyHistogram {
+
+    private static final int PRECISION_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << PRECISION_BITS;
+    private static final int HALF = SUB_BUCKETS / 2;
+
+    private final long[] counts = new long[index(Long.MAX_VALUE) + 1];
+    private long total;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    /**
+     * Counts one occurrence of {@code value}.
+     *
+     * @param value the value to record
+     * @throws IllegalArgumentException if {@code value} is negative
+     */
+    public void record(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException();
+        }
+        counts[index(value)]++;
+        total++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds every value recorded by {@code other} to this histogram.
+     *
+     * @param other the histogram to add
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Removes all recorded values.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        total = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return total;
+    }
+
+    /**
+     * Returns the smallest recorded value, or {@code 0} if the histogram is empty.
+     *
+     * @return the minimum
+     */
+    public long getMin() {
+        return total == 0 ? 0 : min;
+    }
+
+    /**
+     * Returns the largest recorded value, exactly.
+     *
+     * @return the maximum
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the mean of the recorded values, or {@code 0} if the histogram is empty.
+     *
+     * @return the mean
+     */
+    public double getMean() {
+        return total == 0 ? 0 : (double) sum / total;
+    }
+
+    /**
+     * Returns the value below or at which {@code percentile} percent of the recorded values lie,
+     * rounded up to the largest value of its bucket and capped by the maximum.
+     *
+     * @param percentile the percentile, from {@code 0} to {@code 100}
+     * @return the value at the percentile, or {@code 0} if the histogram is empty
+     * @throws IllegalArgumentException if {@code percentile} is out of range
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException();
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestEquivalentValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    //helper methods
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - PRECISION_BITS;
+        return shift * HALF + (int) (value >>> shift);
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / HALF - 1;
+        long sub = index - (long) shift * HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+}
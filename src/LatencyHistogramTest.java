@@ -0,0 +1,55 @@
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        histogram.record(1000000);
+        assertEquals(1001, histogram.getCount());
+        assertEquals(1, histogram.getMin());
+        assertEquals(1000000, histogram.getMax());
+        long p50 = histogram.getValueAtPercentile(50);
+        assertTrue(p50 >= 501 && p50 <= 501 + 501 / 64);
+        long p99 = histogram.getValueAtPercentile(99);
+        assertTrue(p99 >= 991 && p99 <= 991 + 991 / 64);
+        assertEquals(1000000, histogram.getValueAtPercentile(100));
+        assertEquals(1, histogram.getValueAtPercentile(0));
+    }
+
+    @Test
+    public void testBuckets() {
+        for (long value : new long[] {0, 127, 128, 129, 1000, 123456789, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.index(value);
+            long highest = LatencyHistogram.highestEquivalentValue(index);
+            assertTrue(highest >= value);
+            assertTrue(highest - value <= value / 64);
+        }
+        assertEquals(Long.MAX_VALUE, 
+                LatencyHistogram.highestEquivalentValue(LatencyHistogram.index(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testAddAndReset() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        a.record(10);
+        b.record(20);
+        a.add(b);
+        assertEquals(2, a.getCount());
+        assertEquals(15.0, a.getMean(), 1e-9);
+        a.reset();
+        assertEquals(0, a.getCount());
+        assertEquals(0, a.getValueAtPercentile(99));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testNegative() {
+        new LatencyHistogram().record(-1);
+    }
+}
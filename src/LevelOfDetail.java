@@ -0,0 +1,127 @@
+import java.util.Arrays;
+
+/**
+ * Level-of-detail lookups shared by the default methods of {@link QuadTree}.
+ * <p/>
+ * Level {@code 0} is the whole image as a single pixel, level {@code n} is the image scaled down
+ * to {@code 2^n x 2^n} pixels. Each pixel of a level is the average color of the node at that
+ * depth, or the color of the leaf covering it if the tree is shallower there, so no lookup ever
+ * descends below the requested level.
+ *
+ * @author Darshan
+ */
+final class LevelOfDetail {
+
+    private LevelOfDetail() {
+    }
+
+    /**
+     * Returns the side length of {@code tree} at {@code level}.
+     *
+     * @throws IllegalArgumentException if the level is negative or finer than the full image
+     */
+    static int sizeAt(QuadTree tree, int level) {
+        if (level < 0 || level > 30 || (1 << level) > tree.getDimension()) {
+            throw new IllegalArgumentException();
+        }
+        return 1 << level;
+    }
+
+    static int colorAt(QuadTree tree, int x, int y, int level) {
+        int size = sizeAt(tree, level);
+        if (x < 0 || x >= size || y < 0 || y >= size) {
+            throw new IllegalArgumentException();
+        }
+        QuadNode node = tree.getRoot();
+        for (int half = size / 2; half > 0 && !node.isLeaf(); half /= 2) {
+            boolean right = (x & half) != 0;
+            boolean bottom = (y & half) != 0;
+            if (bottom) {
+                node = node.getQuadrant(right
+                        ? QuadNode.QuadName.BOTTOM_RIGHT : QuadNode.QuadName.BOTTOM_LEFT);
+            } else {
+                node = node.getQuadrant(right
+                        ? QuadNode.QuadName.TOP_RIGHT : QuadNode.QuadName.TOP_LEFT);
+            }
+        }
+        return node.getAverageColor();
+    }
+
+    static int[][] render(QuadTree tree, int level) {
+        int size = sizeAt(tree, level);
+        int[][] result = new int[size][size];
+        render(tree.getRoot(), 0, 0, size, result);
+        return result;
+    }
+
+    /**
+     * Renders the {@code width x height} window of {@code level} with its top left corner at
+     * {@code (x, y)} into {@code out}, one row after the other. Only nodes that intersect the
+     * window are visited.
+     *
+     * @throws IllegalArgumentException if the level is invalid or the window is not inside it
+     */
+    static void renderWindow(QuadTree tree, int level, int x, int y, int width, int height,
+            int[] out) {
+        int size = sizeAt(tree, level);
+        if (x < 0 || y < 0 || width < 0 || height < 0 || width > size - x
+                || height > size - y || out.length < width * height) {
+            throw new IllegalArgumentException();
+        }
+        renderWindow(tree.getRoot(), 0, 0, size, x, y, width, height, out);
+    }
+
+    //size is the number of output pixels covered by node at the requested level
+    private static void renderWindow(QuadNode node, int left, int top, int size, int x, int y,
+            int width, int height, int[] out) {
+        if (left >= x + width || top >= y + height || left + size <= x || top + size <= y) {
+            return;
+        }
+        int fromX = Math.max(left, x);
+        int toX = Math.min(left + size, x + width);
+        if (size == node.getDimension() && node instanceof DenseBlockNode) {
+            //at full resolution the rows of a dense block are copied as they are
+            for (int row = Math.max(top, y); row < Math.min(top + size, y + height); row++) {
+                ((DenseBlockNode) node).copyRow(fromX - left, row - top, toX - fromX, out,
+                        (row - y) * width + fromX - x);
+            }
+            return;
+        }
+        if (size == 1 || node.isLeaf()) {
+            int color = node.getAverageColor();
+            for (int row = Math.max(top, y); row < Math.min(top + size, y + height); row++) {
+                int start = (row - y) * width - x;
+                Arrays.fill(out, start + fromX, start + toX, color);
+            }
+            return;
+        }
+        int half = size / 2;
+        renderWindow(node.getQuadrant(QuadNode.QuadName.TOP_LEFT), left, top, half, x, y, width,
+                height, out);
+        renderWindow(node.getQuadrant(QuadNode.QuadName.TOP_RIGHT), left + half, top, half, x, y,
+                width, height, out);
+        renderWindow(node.getQuadrant(QuadNode.QuadName.BOTTOM_LEFT), left, top + half, half, x,
+                y, width, height, out);
+        renderWindow(node.getQuadrant(QuadNode.QuadName.BOTTOM_RIGHT), left + half, top + half,
+                half, x, y, width, height, out);
+    }
+
+    //size is the number of output pixels covered by node at the requested level
+    private static void render(QuadNode node, int left, int top, int size, int[][] arr) {
+        if (size == 1 || node.isLeaf()) {
+            int color = node.getAverageColor();
+            for (int y = top; y < top + size; y++) {
+                for (int x = left; x < left + size; x++) {
+                    arr[y][x] = color;
+                }
+            }
+            return;
+        }
+        int half = size / 2;
+        render(node.getQuadrant(QuadNode.QuadName.TOP_LEFT), left, top, half, arr);
+        render(node.getQuadrant(QuadNode.QuadName.TOP_RIGHT), left + half, top, half, arr);
+        render(node.getQuadrant(QuadNode.QuadName.BOTTOM_LEFT), left, top + half, half, arr);
+        render(node.getQuadrant(QuadNode.QuadName.BOTTOM_RIGHT), left + half, top + half, half,
+                arr);
+    }
+}
@@ -0,0 +1,138 @@
+import java.util.Arrays;
+
+/**
+ * A growable array of non-negative integers packed into the narrowest primitive array that can
+ * hold them.
+ * <p/>
+ * Values start out in a {@code byte[]} and the array widens itself to a {@code short[]} and then an
+ * {@code int[]} the first time a value that does not fit is stored. It never narrows again.
+ *
+ * @author Darshan
+ */
+public class PackedIndexArray {
+
+    private byte[] bytes;
+    private short[] shorts;
+    private int[] ints;
+    private int width;
+
+    public PackedIndexArray(int capacity) {
+        bytes = new byte[Math.max(capacity, 1)];
+        width = 8;
+    }
+
+    /**
+     * Returns the width in bits needed to store {@code value}.
+     *
+     * @param value a non-negative value
+     * @return {@code 8}, {@code 16} or {@code 32}
+     */
+    static int widthFor(int value) {
+        if (value <= 0xFF) {
+            return 8;
+        } else if (value <= 0xFFFF) {
+            return 16;
+        }
+        return 32;
+    }
+
+    /**
+     * Returns the value stored at {@code index}.
+     *
+     * @param index the position
+     * @return the stored value
+     */
+    public int get(int index) {
+        if (width == 8) {
+            return bytes[index] & 0xFF;
+        } else if (width == 16) {
+            return shorts[index] & 0xFFFF;
+        }
+        return ints[index];
+    }
+
+    /**
+     * Stores {@code value} at {@code index}, widening the backing array if needed.
+     *
+     * @param index the position
+     * @param value a non-negative value
+     * @throws IllegalArgumentException if {@code value} is negative
+     */
+    public void set(int index, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException();
+        }
+        int needed = widthFor(value);
+        if (needed > width) {
+            widen(needed);
+        }
+        if (width == 8) {
+            bytes[index] = (byte) value;
+        } else if (width == 16) {
+            shorts[index] = (short) value;
+        } else {
+            ints[index] = value;
+        }
+    }
+
+    /**
+     * Makes sure the array can hold at least {@code capacity} values.
+     *
+     * @param capacity the minimum capacity
+     */
+    public void ensureCapacity(int capacity) {
+        int length = capacity();
+        if (capacity <= length) {
+            return;
+        }
+        int newLength = Math.max(capacity, length * 2);
+        if (width == 8) {
+            bytes = Arrays.copyOf(bytes, newLength);
+        } else if (width == 16) {
+            shorts = Arrays.copyOf(shorts, newLength);
+        } else {
+            ints = Arrays.copyOf(ints, newLength);
+        }
+    }
+
+    /**
+     * Returns the number of values the array can hold without growing.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        if (width == 8) {
+            return bytes.length;
+        } else if (width == 16) {
+            return shorts.length;
+        }
+        return ints.length;
+    }
+
+    /**
+     * Returns the current width of a stored value in bits.
+     *
+     * @return {@code 8}, {@code 16} or {@code 32}
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    private void widen(int newWidth) {
+        int length = capacity();
+        if (newWidth == 16) {
+            shorts = new short[length];
+            for (int i = 0; i < length; i++) {
+                shorts[i] = (short) (bytes[i] & 0xFF);
+            }
+        } else {
+            ints = new int[length];
+            for (int i = 0; i < length; i++) {
+                ints[i] = width == 8 ? bytes[i] & 0xFF : shorts[i] & 0xFFFF;
+            }
+            shorts = null;
+        }
+        bytes = null;
+        width = newWidth;
+    }
+}
@@ -0,0 +1,10 @@
+/*
+ * @author Darshan
+ */
+public class PaletteQuadTreeFactoryImpl extends QuadTreeFactoryImpl {
+    
+    @Override
+    protected QuadTree createQuadTree(int[][] imageData) {
+        return new PaletteQuadTreeImpl(imageData);
+    }
+}
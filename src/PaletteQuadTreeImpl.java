@@ -0,0 +1,408 @@
+import java.util.Arrays;
+
+/**
+ * A {@link QuadTree} that keeps its nodes in flat primitive arrays and stores leaf colors as
+ * indices into a shared {@link ColorPalette}.
+ * <p/>
+ * Every node is a slot in the arrays. The four children of an internal node occupy four
+ * consecutive slots, in {@link QuadNode.QuadName} order, starting at {@code firstChild[node]}.
+ * Leaves have a {@code firstChild} of {@code -1} and their palette index in {@code colors}. Groups
+ * freed by merges are recycled by later splits. The average color of an internal node is cached
+ * per group of children and dropped along the path of every edit. Compared to one
+ * {@link QuadNodeImpl} object per node this costs 6 to 9 bytes per node.
+ * <p/>
+ * {@link #getRoot()} returns lightweight views onto the arrays. The views support reading and
+ * {@link QuadNode#setColor(int)} on leaves but not {@link QuadNode#setQuadrant}.
+ *
+ * @author Darshan
+ */
+public class PaletteQuadTreeImpl implements QuadTree {
+
+    private static final int ROOT = 0;
+    private static final int LEAF = -1;
+
+    private final int dimension;
+    private final ColorPalette palette;
+    private int[] firstChild;
+    private final PackedIndexArray colors;
+    private int slots;
+    private int nodeCount;
+    private int[] freeGroups;
+    private int freeCount;
+    //average color of every internal node, indexed by the group of its children
+    private int[] averages;
+    //one bit per group, set while its entry in averages is current
+    private long[] averaged;
+
+    public PaletteQuadTreeImpl(int[][] imageData) {
+        dimension = imageData.length;
+        palette = new ColorPalette();
+        firstChild = new int[64];
+        colors = new PackedIndexArray(64);
+        freeGroups = new int[16];
+        averages = new int[16];
+        averaged = new long[1];
+        slots = 1;
+        nodeCount = 1;
+        build(ROOT, 0, 0, dimension, imageData);
+    }
+
+    @Override
+    public void setColor(int x, int y, int color) throws IllegalArgumentException {
+        if (x < 0 || x >= dimension || y < 0 || y >= dimension) {
+            throw new IllegalArgumentException();
+        }
+        int index = palette.indexOf(color);
+        int[] path = new int[Integer.numberOfTrailingZeros(dimension) + 1];
+        int depth = 0;
+        int node = ROOT;
+        int size = dimension;
+        int left = 0;
+        int top = 0;
+        while (size > 1) {
+            if (firstChild[node] == LEAF) {
+                if (colors.get(node) == index) {
+                    return;
+                }
+                split(node);
+            }
+            path[depth++] = node;
+            size /= 2;
+            int quadrant = quadrantOf(x - left, y - top, size);
+            left += (quadrant & 1) * size;
+            top += (quadrant >> 1) * size;
+            node = firstChild[node] + quadrant;
+        }
+        colors.set(node, index);
+        for (int i = 0; i < depth; i++) {
+            invalidateAverage(path[i]);
+        }
+        //merge back up while all four siblings are equal leaves
+        while (depth > 0) {
+            int parent = path[--depth];
+            if (!mergeable(firstChild[parent])) {
+                return;
+            }
+            merge(parent);
+        }
+    }
+
+    /**
+     * Replaces whole subtrees inside the rectangle by a single leaf and recycles their groups.
+     */
+    @Override
+    public void fillRect(int x, int y, int width, int height, int color) 
+            throws IllegalArgumentException {
+        if (width < 0 || height < 0 || x < 0 || y < 0 || width > dimension - x 
+                || height > dimension - y) {
+            throw new IllegalArgumentException();
+        }
+        if (width > 0 && height > 0) {
+            rectFill(ROOT, 0, 0, dimension, x, y, x + width, y + height, palette.indexOf(color));
+        }
+    }
+
+    @Override
+    public int getColor(int x, int y) throws IllegalArgumentException {
+        if (x < 0 || x >= dimension || y < 0 || y >= dimension) {
+            throw new IllegalArgumentException();
+        }
+        return palette.getColor(colors.get(find(x, y)));
+    }
+
+    @Override
+    public int getDimension() {
+        return dimension;
+    }
+
+    @Override
+    public int[][] decompress() {
+        int[][] result = new int[dimension][dimension];
+        populate(ROOT, 0, 0, dimension, result);
+        return result;
+    }
+
+    @Override
+    public double getCompressionRatio() {
+        return (double) nodeCount / ((double) dimension * dimension);
+    }
+
+    @Override
+    public QuadNode getRoot() {
+        return new Node(ROOT, dimension, null);
+    }
+
+    /**
+     * Returns the palette shared by all leaves of this tree.
+     *
+     * @return the color palette
+     */
+    public ColorPalette getPalette() {
+        return palette;
+    }
+
+    /**
+     * Returns the number of bits currently used to store each leaf's palette index.
+     *
+     * @return {@code 8}, {@code 16} or {@code 32}
+     */
+    public int getIndexWidth() {
+        return colors.getWidth();
+    }
+
+    //helper methods
+    private void build(int node, int left, int top, int size, int[][] img) {
+        if (size == 1) {
+            firstChild[node] = LEAF;
+            colors.set(node, palette.indexOf(img[top][left]));
+            return;
+        }
+        int group = allocateGroup();
+        int half = size / 2;
+        build(group, left, top, half, img);
+        build(group + 1, left + half, top, half, img);
+        build(group + 2, left, top + half, half, img);
+        build(group + 3, left + half, top + half, half, img);
+        firstChild[node] = group;
+        if (mergeable(group)) {
+            merge(node);
+        }
+    }
+
+    private void rectFill(int node, int left, int top, int size, int minX, int minY, int maxX, 
+            int maxY, int index) {
+        if (left >= maxX || top >= maxY || left + size <= minX || top + size <= minY) {
+            return;
+        }
+        if (left >= minX && top >= minY && left + size <= maxX && top + size <= maxY) {
+            if (firstChild[node] != LEAF) {
+                freeSubtree(firstChild[node]);
+                firstChild[node] = LEAF;
+            }
+            colors.set(node, index);
+            return;
+        }
+        if (firstChild[node] == LEAF) {
+            if (colors.get(node) == index) {
+                return;
+            }
+            split(node);
+        }
+        int half = size / 2;
+        int group = firstChild[node];
+        rectFill(group, left, top, half, minX, minY, maxX, maxY, index);
+        rectFill(group + 1, left + half, top, half, minX, minY, maxX, maxY, index);
+        rectFill(group + 2, left, top + half, half, minX, minY, maxX, maxY, index);
+        rectFill(group + 3, left + half, top + half, half, minX, minY, maxX, maxY, index);
+        invalidateAverage(node);
+        if (mergeable(group)) {
+            merge(node);
+        }
+    }
+
+    private void freeSubtree(int group) {
+        for (int i = 0; i < 4; i++) {
+            if (firstChild[group + i] != LEAF) {
+                freeSubtree(firstChild[group + i]);
+            }
+        }
+        freeGroup(group);
+    }
+
+    private int find(int x, int y) {
+        int node = ROOT;
+        int size = dimension;
+        while (firstChild[node] != LEAF) {
+            size /= 2;
+            node = firstChild[node] + quadrantOf(x % (size * 2), y % (size * 2), size);
+        }
+        return node;
+    }
+
+    private static int quadrantOf(int x, int y, int half) {
+        int quadrant = 0;
+        if (x >= half) {
+            quadrant += 1;
+        }
+        if (y >= half) {
+            quadrant += 2;
+        }
+        return quadrant;
+    }
+
+    private boolean mergeable(int group) {
+        int index = colors.get(group);
+        for (int i = 0; i < 4; i++) {
+            if (firstChild[group + i] != LEAF || colors.get(group + i) != index) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void merge(int node) {
+        int group = firstChild[node];
+        colors.set(node, colors.get(group));
+        firstChild[node] = LEAF;
+        freeGroup(group);
+    }
+
+    private void split(int node) {
+        int index = colors.get(node);
+        int group = allocateGroup();
+        for (int i = 0; i < 4; i++) {
+            firstChild[group + i] = LEAF;
+            colors.set(group + i, index);
+        }
+        firstChild[node] = group;
+    }
+
+    private int allocateGroup() {
+        nodeCount += 4;
+        int group;
+        if (freeCount > 0) {
+            group = freeGroups[--freeCount];
+        } else {
+            if (slots + 4 > firstChild.length) {
+                firstChild = Arrays.copyOf(firstChild, firstChild.length * 2);
+                colors.ensureCapacity(firstChild.length);
+                averages = Arrays.copyOf(averages, firstChild.length / 4);
+                averaged = Arrays.copyOf(averaged, (averages.length + 63) / 64);
+            }
+            group = slots;
+            slots += 4;
+        }
+        //groups start at slot 1 and take four slots each
+        averaged[group >>> 8] &= ~(1L << (group >>> 2));
+        return group;
+    }
+
+    private void freeGroup(int group) {
+        nodeCount -= 4;
+        if (freeCount == freeGroups.length) {
+            freeGroups = Arrays.copyOf(freeGroups, freeCount * 2);
+        }
+        freeGroups[freeCount++] = group;
+    }
+
+    private int subtreeSize(int node) {
+        if (firstChild[node] == LEAF) {
+            return 1;
+        }
+        int size = 1;
+        for (int i = 0; i < 4; i++) {
+            size += subtreeSize(firstChild[node] + i);
+        }
+        return size;
+    }
+
+    private int averageColor(int node) {
+        if (firstChild[node] == LEAF) {
+            return palette.getColor(colors.get(node));
+        }
+        int group = firstChild[node];
+        int index = group >>> 2;
+        if ((averaged[index >>> 6] & (1L << index)) == 0) {
+            averages[index] = QuadNodeImpl.averageColor(averageColor(group), 
+                    averageColor(group + 1), averageColor(group + 2), averageColor(group + 3));
+            averaged[index >>> 6] |= 1L << index;
+        }
+        return averages[index];
+    }
+
+    private void invalidateAverage(int node) {
+        int group = firstChild[node];
+        if (group != LEAF) {
+            averaged[group >>> 8] &= ~(1L << (group >>> 2));
+        }
+    }
+
+    private void populate(int node, int left, int top, int size, int[][] arr) {
+        if (firstChild[node] == LEAF) {
+            int color = palette.getColor(colors.get(node));
+            for (int y = top; y < top + size; y++) {
+                Arrays.fill(arr[y], left, left + size, color);
+            }
+            return;
+        }
+        int half = size / 2;
+        int group = firstChild[node];
+        populate(group, left, top, half, arr);
+        populate(group + 1, left + half, top, half, arr);
+        populate(group + 2, left, top + half, half, arr);
+        populate(group + 3, left + half, top + half, half, arr);
+    }
+
+    /**
+     * View of a single slot of the enclosing tree.
+     */
+    private class Node implements QuadNode {
+
+        private final int slot;
+        private final int size;
+        //the view this one was reached from, whose average depends on this node
+        private final Node parent;
+
+        Node(int slot, int size, Node parent) {
+            this.slot = slot;
+            this.size = size;
+            this.parent = parent;
+        }
+
+        @Override
+        public int getColor() {
+            if (!isLeaf()) {
+                throw new IllegalStateException("Node is not a leaf");
+            }
+            return palette.getColor(colors.get(slot));
+        }
+
+        /**
+         * Internal averages are computed from the leaves below this node the first time they are
+         * asked for and cached until a leaf below changes.
+         */
+        @Override
+        public int getAverageColor() {
+            return averageColor(slot);
+        }
+
+        @Override
+        public void setColor(int color) {
+            if (!isLeaf()) {
+                throw new IllegalStateException();
+            }
+            colors.set(slot, palette.indexOf(color));
+            for (Node node = parent; node != null; node = node.parent) {
+                invalidateAverage(node.slot);
+            }
+        }
+
+        @Override
+        public QuadNode getQuadrant(QuadName quadrant) {
+            if (isLeaf()) {
+                return null;
+            }
+            return new Node(firstChild[slot] + quadrant.ordinal(), size / 2, this);
+        }
+
+        @Override
+        public boolean isLeaf() {
+            return firstChild[slot] == LEAF;
+        }
+
+        @Override
+        public int getDimension() {
+            return size;
+        }
+
+        @Override
+        public int getSize() {
+            return subtreeSize(slot);
+        }
+
+        @Override
+        public void setQuadrant(QuadName quadrant, QuadNode value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PaletteQuadTreeImplTest {
+
+    PaletteQuadTreeImpl quadTree1, quadTree2;
+    int[][] img1, img2;
+    @Before
+    public void setUp() {
+        img1 = new int[][] {{1,1}, {1,1}};
+        img2 = new int[][] {
+            {1, 1, 2, 2},
+            {1, 1, 2, 2},
+            {2, 3, 2, 3},
+            {3, 3, 1, 1}
+        };
+        quadTree1 = new PaletteQuadTreeImpl(img1);
+        quadTree2 = new PaletteQuadTreeImpl(img2);
+    }
+
+    @Test
+    public void testGetColor() {
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                assertEquals(img2[y][x], quadTree2.getColor(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testSetColor() {
+        quadTree1.setColor(1, 0, 7);
+        assertEquals(7, quadTree1.getColor(1, 0));
+        assertEquals(1, quadTree1.getColor(0, 0));
+        assertEquals(5, quadTree1.getRoot().getSize());
+        quadTree1.setColor(1, 0, 1);
+        assertTrue(quadTree1.getRoot().isLeaf());
+        assertEquals(1, quadTree1.getRoot().getColor());
+    }
+
+    @Test
+    public void testFillRect() {
+        quadTree2.fillRect(0, 0, 4, 2, 2);
+        assertEquals(2, quadTree2.getColor(0, 0));
+        assertEquals(13, quadTree2.getRoot().getSize());
+        quadTree2.fillRect(1, 1, 3, 3, 5);
+        quadTree2.fillRect(0, 0, 1, 4, 5);
+        quadTree2.fillRect(0, 0, 4, 1, 5);
+        assertTrue(quadTree2.getRoot().isLeaf());
+        assertEquals(5, quadTree2.getColor(2, 3));
+        quadTree2.setColor(0, 0, 1);
+        assertEquals(9, quadTree2.getRoot().getSize());
+        assertEquals(1, quadTree2.getColor(0, 0));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testFillRectOutOfBounds() {
+        quadTree2.fillRect(2, 2, 3, 1, 0);
+    }
+
+    @Test
+    public void testDecompress() {
+        assertArrayEquals(img2, quadTree2.decompress());
+    }
+
+    @Test
+    public void testGetCompressionRatio() {
+        assertEquals(0.25, quadTree1.getCompressionRatio(), 0.0001);
+        assertEquals(13.0 / 16, quadTree2.getCompressionRatio(), 0.0001);
+    }
+
+    @Test
+    public void testIndexWidthGrows() {
+        int[][] img = new int[32][32];
+        for (int y = 0; y < 32; y++) {
+            for (int x = 0; x < 32; x++) {
+                img[y][x] = y * 32 + x;
+            }
+        }
+        PaletteQuadTreeImpl tree = new PaletteQuadTreeImpl(img);
+        assertEquals(1024, tree.getPalette().size());
+        assertEquals(16, tree.getIndexWidth());
+        assertArrayEquals(img, tree.decompress());
+        assertEquals(8, quadTree2.getIndexWidth());
+    }
+
+    @Test
+    public void testAverageColor() {
+        QuadNode root = quadTree2.getRoot();
+        assertEquals(new QuadTreeImpl(img2).getRoot().getAverageColor(), root.getAverageColor());
+        //edits through the tree and through a view both reach the cached averages above them
+        quadTree2.setColor(3, 3, 0x80FF4020);
+        img2[3][3] = 0x80FF4020;
+        assertEquals(new QuadTreeImpl(img2).getRoot().getAverageColor(), root.getAverageColor());
+        root.getQuadrant(QuadNode.QuadName.BOTTOM_LEFT).getQuadrant(QuadNode.QuadName.TOP_LEFT)
+                .setColor(0xFF00FF);
+        img2[2][0] = 0xFF00FF;
+        assertEquals(new QuadTreeImpl(img2).getRoot().getAverageColor(), root.getAverageColor());
+    }
+
+    @Test
+    public void testGetRoot() {
+        QuadNode root = quadTree2.getRoot();
+        assertFalse(root.isLeaf());
+        assertEquals(13, root.getSize());
+        QuadNode tl = root.getQuadrant(QuadNode.QuadName.TOP_LEFT);
+        assertTrue(tl.isLeaf());
+        assertEquals(2, tl.getDimension());
+        assertEquals(1, tl.getColor());
+    }
+}
@@ -0,0 +1,309 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A {@link QuadTree} that stores every color channel in a quadtree of its own.
+ * <p/>
+ * A {@link QuadTreeImpl} only merges four quadrants when their whole {@code int} colors agree, so
+ * a smooth gradient in a single channel keeps the tree deep even where the other channels are
+ * flat. Here each channel (red, green, blue and optionally alpha) is compressed independently and
+ * only keeps the nodes its own values need. The planes are built concurrently on the common
+ * fork-join pool.
+ * <p/>
+ * Each plane is a {@link PaletteQuadTreeImpl}. A channel has at most 256 values, so its leaves
+ * always hold one-byte palette indices and a node of a plane takes about 6 bytes, against about 40
+ * for a {@link QuadNodeImpl}. The planes together usually have more nodes than a
+ * {@link QuadTreeImpl} of the same image, which {@link #getCompressionRatio()} reports, but take
+ * less memory.
+ * <p/>
+ * Colors are split into channels in {@link #setColor} and recombined in {@link #getColor} and
+ * {@link #decompress}, so callers see the same packed {@code 0xAARRGGBB} values as with any other
+ * {@link QuadTree}. Without the alpha plane, the alpha byte of every color reads as {@code 0}.
+ * {@link #getRoot()} returns a read-only view whose leaves are the regions where every plane is
+ * uniform.
+ *
+ * @author Darshan
+ */
+public class PlanarQuadTree implements QuadTree {
+
+    //bit offsets of red, green, blue and alpha in a packed color
+    private static final int[] SHIFTS = {16, 8, 0, 24};
+
+    private final PaletteQuadTreeImpl[] planes;
+
+    /**
+     * Builds the planes of {@code imageData}.
+     *
+     * @param imageData a square image whose side is a power of two
+     * @param keepAlpha whether to keep the alpha channel in a fourth plane
+     * @throws IllegalArgumentException if {@code imageData} is null, empty, not square or its
+     * side is not a power of two
+     */
+    public PlanarQuadTree(int[][] imageData, boolean keepAlpha) {
+        if (imageData == null || imageData.length == 0 
+                || Integer.bitCount(imageData.length) != 1) {
+            throw new IllegalArgumentException();
+        }
+        for (int[] row : imageData) {
+            if (row == null || row.length != imageData.length) {
+                throw new IllegalArgumentException();
+            }
+        }
+        int count = keepAlpha ? 4 : 3;
+        List<CompletableFuture<PaletteQuadTreeImpl>> builds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int shift = SHIFTS[i];
+            builds.add(CompletableFuture.supplyAsync(
+                () -> new PaletteQuadTreeImpl(channel(imageData, shift))));
+        }
+        planes = new PaletteQuadTreeImpl[count];
+        for (int i = 0; i < count; i++) {
+            try {
+                planes[i] = builds.get(i).join();
+            } catch (CompletionException e) {
+                //rethrow what the plane's constructor threw instead of the wrapper
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                } else if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Returns whether this tree has an alpha plane.
+     *
+     * @return {@code true} if the alpha channel is kept
+     */
+    public boolean hasAlpha() {
+        return planes.length == 4;
+    }
+
+    /**
+     * Returns the number of nodes in each plane, in the order red, green, blue and alpha.
+     *
+     * @return the node counts of the planes
+     */
+    public int[] getPlaneSizes() {
+        int[] sizes = new int[planes.length];
+        for (int i = 0; i < planes.length; i++) {
+            sizes[i] = planes[i].getRoot().getSize();
+        }
+        return sizes;
+    }
+
+    @Override
+    public void setColor(int x, int y, int color) {
+        for (int i = 0; i < planes.length; i++) {
+            planes[i].setColor(x, y, (color >>> SHIFTS[i]) & 0xFF);
+        }
+    }
+
+    @Override
+    public int getColor(int x, int y) {
+        int color = 0;
+        for (int i = 0; i < planes.length; i++) {
+            color |= planes[i].getColor(x, y) << SHIFTS[i];
+        }
+        return color;
+    }
+
+    @Override
+    public void fillRect(int x, int y, int width, int height, int color) {
+        for (int i = 0; i < planes.length; i++) {
+            planes[i].fillRect(x, y, width, height, (color >>> SHIFTS[i]) & 0xFF);
+        }
+    }
+
+    /**
+     * Finds the region through the leaves of {@link #getRoot()}, which are uniform in every plane,
+     * and then fills it a leaf at a time, so the cost depends on the number of leaves in the
+     * region rather than its area.
+     */
+    @Override
+    public void floodFill(int x, int y, int color) {
+        int target = getColor(x, y);
+        if (target == color) {
+            return;
+        }
+        QuadTreeSpatialIndex index = new QuadTreeSpatialIndex(this);
+        QuadTreeSpatialIndex.Direction[] edges = {QuadTreeSpatialIndex.Direction.WEST, 
+            QuadTreeSpatialIndex.Direction.EAST, QuadTreeSpatialIndex.Direction.NORTH, 
+            QuadTreeSpatialIndex.Direction.SOUTH};
+        QuadTreeSpatialIndex.Leaf seed = index.locate(x, y);
+        List<QuadTreeSpatialIndex.Leaf> region = new ArrayList<>();
+        //no two leaves share their top left corner
+        Set<Long> visited = new HashSet<>();
+        ArrayDeque<QuadTreeSpatialIndex.Leaf> queue = new ArrayDeque<>();
+        visited.add(corner(seed));
+        queue.add(seed);
+        while (!queue.isEmpty()) {
+            QuadTreeSpatialIndex.Leaf leaf = queue.poll();
+            region.add(leaf);
+            for (QuadTreeSpatialIndex.Direction edge : edges) {
+                for (QuadTreeSpatialIndex.Leaf neighbour : index.neighbours(leaf, edge)) {
+                    if (neighbour.getColor() == target && visited.add(corner(neighbour))) {
+                        queue.add(neighbour);
+                    }
+                }
+            }
+        }
+        for (QuadTreeSpatialIndex.Leaf leaf : region) {
+            fillRect(leaf.getX(), leaf.getY(), leaf.getSize(), leaf.getSize(), color);
+        }
+    }
+
+    @Override
+    public int getDimension() {
+        return planes[0].getDimension();
+    }
+
+    @Override
+    public int[][] decompress() {
+        int[][] result = planes[0].decompress();
+        for (int[] row : result) {
+            for (int x = 0; x < row.length; x++) {
+                row[x] <<= SHIFTS[0];
+            }
+        }
+        for (int i = 1; i < planes.length; i++) {
+            int[][] plane = planes[i].decompress();
+            for (int y = 0; y < result.length; y++) {
+                for (int x = 0; x < result.length; x++) {
+                    result[y][x] |= plane[y][x] << SHIFTS[i];
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The compression ratio counts the nodes of all planes together.
+     */
+    @Override
+    public double getCompressionRatio() {
+        long nodes = 0;
+        for (PaletteQuadTreeImpl plane : planes) {
+            nodes += plane.getRoot().getSize();
+        }
+        return (double) nodes / ((long) getDimension() * getDimension());
+    }
+
+    @Override
+    public QuadNode getRoot() {
+        QuadNode[] roots = new QuadNode[planes.length];
+        for (int i = 0; i < planes.length; i++) {
+            roots[i] = planes[i].getRoot();
+        }
+        return new Node(roots, getDimension());
+    }
+
+    //helper methods
+    private static long corner(QuadTreeSpatialIndex.Leaf leaf) {
+        return (long) leaf.getY() << 32 | leaf.getX();
+    }
+
+    private static int[][] channel(int[][] imageData, int shift) {
+        int[][] result = new int[imageData.length][];
+        for (int y = 0; y < imageData.length; y++) {
+            int[] row = imageData[y];
+            result[y] = new int[row.length];
+            for (int x = 0; x < row.length; x++) {
+                result[y][x] = (row[x] >>> shift) & 0xFF;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * View of the same square in every plane. A plane whose node is a leaf larger than the square
+     * keeps contributing that leaf to all of its descendants.
+     */
+    private static class Node implements QuadNode {
+
+        private final QuadNode[] nodes;
+        private final int dimension;
+
+        Node(QuadNode[] nodes, int dimension) {
+            this.nodes = nodes;
+            this.dimension = dimension;
+        }
+
+        @Override
+        public int getColor() {
+            if (!isLeaf()) {
+                throw new IllegalStateException("Node is not a leaf");
+            }
+            int color = 0;
+            for (int i = 0; i < nodes.length; i++) {
+                color |= nodes[i].getColor() << SHIFTS[i];
+            }
+            return color;
+        }
+
+        @Override
+        public int getAverageColor() {
+            int color = 0;
+            for (int i = 0; i < nodes.length; i++) {
+                color |= (nodes[i].getAverageColor() & 0xFF) << SHIFTS[i];
+            }
+            return color;
+        }
+
+        @Override
+        public void setColor(int color) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public QuadNode getQuadrant(QuadName quadrant) {
+            if (isLeaf()) {
+                return null;
+            }
+            QuadNode[] children = new QuadNode[nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                children[i] = nodes[i].isLeaf() ? nodes[i] : nodes[i].getQuadrant(quadrant);
+            }
+            return new Node(children, dimension / 2);
+        }
+
+        @Override
+        public boolean isLeaf() {
+            for (QuadNode node : nodes) {
+                if (!node.isLeaf()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int getDimension() {
+            return dimension;
+        }
+
+        @Override
+        public int getSize() {
+            if (isLeaf()) {
+                return 1;
+            }
+            int size = 1;
+            for (QuadName quadrant : QuadName.values()) {
+                size += getQuadrant(quadrant).getSize();
+            }
+            return size;
+        }
+
+        @Override
+        public void setQuadrant(QuadName quadrant, QuadNode value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+/*
+ * @author Darshan
+ */
+public class PlanarQuadTreeFactoryImpl extends QuadTreeFactoryImpl {
+    
+    private final boolean keepAlpha;
+    
+    public PlanarQuadTreeFactoryImpl() {
+        this(true);
+    }
+    
+    public PlanarQuadTreeFactoryImpl(boolean keepAlpha) {
+        this.keepAlpha = keepAlpha;
+    }
+    
+    @Override
+    protected QuadTree createQuadTree(int[][] imageData) {
+        return new PlanarQuadTree(imageData, keepAlpha);
+    }
+}
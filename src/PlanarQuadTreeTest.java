@@ -0,0 +1,103 @@
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PlanarQuadTreeTest {
+
+    int[][] gradient;
+    @Before
+    public void setUp() {
+        //red changes with every column, green and blue are flat
+        gradient = new int[16][16];
+        for (int y = 0; y < 16; y++) {
+            for (int x = 0; x < 16; x++) {
+                gradient[y][x] = (x * 16) << 16 | 0x40 << 8 | 0x80;
+            }
+        }
+    }
+
+    @Test
+    public void testDecompress() {
+        PlanarQuadTree tree = new PlanarQuadTree(gradient, false);
+        assertArrayEquals(gradient, tree.decompress());
+        assertEquals(0xF04080, tree.getColor(15, 3));
+        assertEquals(16, tree.getDimension());
+    }
+
+    @Test
+    public void testFlatPlanes() {
+        PlanarQuadTree tree = new PlanarQuadTree(gradient, false);
+        QuadTree packed = new QuadTreeImpl(gradient);
+        int[] sizes = tree.getPlaneSizes();
+        assertEquals(packed.getRoot().getSize(), sizes[0]);
+        assertEquals(1, sizes[1]);
+        assertEquals(1, sizes[2]);
+        //the view only splits where some plane does
+        assertEquals(packed.getRoot().getSize(), tree.getRoot().getSize());
+    }
+
+    @Test
+    public void testAlpha() {
+        int[][] img = {
+            {0x80FF0000, 0xFFFFFFFF},
+            {0x00000000, 0x7F00FF00}
+        };
+        PlanarQuadTree tree = new PlanarQuadTree(img, true);
+        assertTrue(tree.hasAlpha());
+        assertArrayEquals(img, tree.decompress());
+        tree.setColor(1, 1, 0x12345678);
+        assertEquals(0x12345678, tree.getColor(1, 1));
+        assertEquals(0x00345678, new PlanarQuadTree(tree.decompress(), false).getColor(1, 1));
+    }
+
+    @Test
+    public void testSetColorAndFillRect() {
+        PlanarQuadTree tree = new PlanarQuadTree(gradient, false);
+        tree.fillRect(0, 0, 16, 16, 0x102030);
+        assertTrue(tree.getRoot().isLeaf());
+        assertEquals(0x102030, tree.getRoot().getColor());
+        tree.setColor(3, 4, 0x102031);
+        assertEquals(0x102031, tree.getColor(3, 4));
+        assertEquals(3, tree.getPlaneSizes().length);
+        assertEquals(1, tree.getPlaneSizes()[0]);
+    }
+
+    @Test
+    public void testFloodFill() {
+        int[][] img = new int[8][8];
+        for (int i = 0; i < 8; i++) {
+            img[i][3] = 0xFF000000;
+            img[3][i] = 0xFF000000;
+        }
+        PlanarQuadTree tree = new PlanarQuadTree(img, true);
+        QuadTree expected = new QuadTreeImpl(img);
+        tree.floodFill(7, 7, 0x80102030);
+        expected.floodFill(7, 7, 0x80102030);
+        assertArrayEquals(expected.decompress(), tree.decompress());
+        tree.floodFill(3, 0, 0);
+        expected.floodFill(3, 0, 0);
+        assertArrayEquals(expected.decompress(), tree.decompress());
+    }
+
+    @Test
+    public void testFactory() {
+        QuadTree tree = new PlanarQuadTreeFactoryImpl().buildFromIntArray(new int[][] {{-1}});
+        assertEquals(-1, tree.getColor(0, 0));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testNotSquare() {
+        new PlanarQuadTree(new int[][] {{1, 2}, {3}}, false);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testNotPowerOfTwo() {
+        new PlanarQuadTree(new int[3][3], true);
+    }
+
+    @Test (expected = UnsupportedOperationException.class)
+    public void testRootIsReadOnly() {
+        new PlanarQuadTree(gradient, false).getRoot().setColor(0);
+    }
+}
@@ -0,0 +1,162 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Breadth-first serialization of {@link QuadTree}s that can be decoded coarse-to-fine.
+ * <p/>
+ * After a magic number and the dimension, the stream holds one record for the root followed by
+ * the four child records of every internal node in breadth-first order. A record is a flag byte,
+ * {@code 0} for an internal node or {@code 1} for a leaf, and a 4-byte color, which for internal
+ * nodes is their {@link QuadNode#getAverageColor() average color}.
+ * <p/>
+ * Because every level only refines the one before it, a decoder can stop anywhere: nodes whose
+ * children have not been read yet simply become leaves of their average color. A stream cut off
+ * at any byte offset therefore still decodes to a valid, coarser {@link QuadTree}.
+ *
+ * @author Darshan
+ */
+public final class ProgressiveQuadTreeCodec {
+
+    static final int MAGIC = 0x51545047;
+
+    private static final int INTERNAL = 0;
+    private static final int LEAF = 1;
+
+    private ProgressiveQuadTreeCodec() {
+    }
+
+    /**
+     * Writes {@code tree} to {@code out} level by level. The stream is flushed but not closed.
+     *
+     * @param tree the tree to serialize
+     * @param out the destination
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if {@code tree} is null
+     */
+    public static void write(QuadTree tree, OutputStream out) throws IOException {
+        if (tree == null) {
+            throw new IllegalArgumentException();
+        }
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(tree.getDimension());
+        writeRecord(tree.getRoot(), data);
+        Queue<QuadNode> queue = new ArrayDeque<>();
+        if (!tree.getRoot().isLeaf()) {
+            queue.add(tree.getRoot());
+        }
+        while (!queue.isEmpty()) {
+            QuadNode node = queue.poll();
+            for (QuadNode.QuadName quadrant : QuadNode.QuadName.values()) {
+                QuadNode child = node.getQuadrant(quadrant);
+                writeRecord(child, data);
+                if (!child.isLeaf()) {
+                    queue.add(child);
+                }
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads as much of a tree written by {@link #write} as {@code in} provides. If the stream ends
+     * early the returned tree is the coarser image decoded so far.
+     *
+     * @param in the source
+     * @return the decoded tree
+     * @throws IOException if reading fails or the stream does not start with a valid header
+     */
+    public static QuadTree read(InputStream in) throws IOException {
+        return read(in, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads a tree written by {@link #write}, stopping once {@code maxLevel} levels below the root
+     * have been decoded or the stream ends, whichever comes first. With a {@code maxLevel} of
+     * {@code n} the result shows the same image as {@link QuadTree#decompressAtLevel(int)} with
+     * level {@code n}, at full dimension.
+     *
+     * @param in the source
+     * @param maxLevel the deepest level to decode, {@code 0} decodes only the root
+     * @return the decoded tree
+     * @throws IOException if reading fails or the stream does not start with a valid header
+     * @throws IllegalArgumentException if {@code maxLevel} is negative
+     */
+    public static QuadTree read(InputStream in, int maxLevel) throws IOException {
+        if (maxLevel < 0) {
+            throw new IllegalArgumentException();
+        }
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a progressive QuadTree stream");
+        }
+        int dimension = data.readInt();
+        if (dimension <= 0 || Integer.bitCount(dimension) != 1) {
+            throw new IOException("Invalid dimension " + dimension);
+        }
+        int rootFlag;
+        int rootColor;
+        try {
+            rootFlag = data.readByte();
+            rootColor = data.readInt();
+        } catch (EOFException e) {
+            throw new IOException("Stream ends before the root record", e);
+        }
+        QuadNode root = new QuadNodeImpl(dimension, rootColor);
+        Queue<QuadNode> queue = new ArrayDeque<>();
+        if (rootFlag == INTERNAL && dimension > 1) {
+            queue.add(root);
+        }
+        int[] flags = new int[4];
+        int[] colors = new int[4];
+        while (!queue.isEmpty()) {
+            QuadNode node = queue.poll();
+            int childDimension = node.getDimension() / 2;
+            if (Integer.numberOfTrailingZeros(dimension / childDimension) > maxLevel) {
+                break;
+            }
+            //all four children are read before the node is split so it is never half expanded
+            try {
+                for (int i = 0; i < 4; i++) {
+                    flags[i] = data.readByte();
+                    colors[i] = data.readInt();
+                }
+            } catch (EOFException e) {
+                break;
+            }
+            QuadNode.QuadName[] quadrants = QuadNode.QuadName.values();
+            for (int i = 0; i < 4; i++) {
+                QuadNode child = new QuadNodeImpl(childDimension, colors[i]);
+                node.setQuadrant(quadrants[i], child);
+                if (flags[i] == INTERNAL && childDimension > 1) {
+                    queue.add(child);
+                }
+            }
+        }
+        normalize(root);
+        return new QuadTreeImpl(root);
+    }
+
+    //helper methods
+    private static void writeRecord(QuadNode node, DataOutputStream out) throws IOException {
+        out.writeByte(node.isLeaf() ? LEAF : INTERNAL);
+        out.writeInt(node.getAverageColor());
+    }
+
+    //a partially decoded level can leave four equal leaves behind, merge them
+    private static void normalize(QuadNode node) {
+        if (node.isLeaf()) {
+            return;
+        }
+        for (QuadNode.QuadName quadrant : QuadNode.QuadName.values()) {
+            normalize(node.getQuadrant(quadrant));
+        }
+        QuadTreeImpl.mergeChildren(node);
+    }
+}
@@ -0,0 +1,66 @@
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProgressiveQuadTreeCodecTest {
+
+    QuadTree tree;
+    int[][] img;
+    byte[] encoded;
+    @Before
+    public void setUp() throws IOException {
+        img = new int[8][8];
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                img[y][x] = x < 4 ? 0x10 : (x * 31 + y * 17) % 5 * 0x20;
+            }
+        }
+        tree = new QuadTreeImpl(img);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ProgressiveQuadTreeCodec.write(tree, out);
+        encoded = out.toByteArray();
+    }
+
+    @Test
+    public void testWriteRead() throws IOException {
+        QuadTree read = ProgressiveQuadTreeCodec.read(new ByteArrayInputStream(encoded));
+        assertArrayEquals(img, read.decompress());
+        assertEquals(tree.getRoot().getSize(), read.getRoot().getSize());
+    }
+
+    @Test
+    public void testReadToLevel() throws IOException {
+        for (int level = 0; level <= 3; level++) {
+            QuadTree read = ProgressiveQuadTreeCodec.read(new ByteArrayInputStream(encoded), level);
+            assertEquals(8, read.getDimension());
+            int[][] preview = tree.decompressAtLevel(level);
+            int scale = 8 / preview.length;
+            int[][] decoded = read.decompress();
+            for (int y = 0; y < 8; y++) {
+                for (int x = 0; x < 8; x++) {
+                    assertEquals(preview[y / scale][x / scale], decoded[y][x]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTruncatedStreamsDecode() throws IOException {
+        for (int length = 13; length <= encoded.length; length++) {
+            QuadTree read = ProgressiveQuadTreeCodec.read(
+                    new ByteArrayInputStream(encoded, 0, length));
+            assertEquals(8, read.getDimension());
+            assertEquals(tree.getColor(0, 0, 0), read.getColor(0, 0, 0));
+        }
+    }
+
+    @Test (expected = IOException.class)
+    public void testMissingRoot() throws IOException {
+        ProgressiveQuadTreeCodec.read(new ByteArrayInputStream(encoded, 0, 10));
+    }
+}
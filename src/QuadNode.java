@@ -24,6 +24,17 @@ public interface QuadNode {
      */
     int getColor();
 
+    /**
+     * Returns the average color of the region that this quadnode represents.
+     * <p/>
+     * For a leaf this is the same as {@link #getColor()}. For an internal node it is the
+     * channel-wise average of the average colors of its four children, so it never throws. Each of
+     * the four bytes of the color is averaged separately.
+     *
+     * @return the average color of the region
+     */
+    int getAverageColor();
+
     /**
      * Sets the color of the current quadrant. This method can only be called on a leaf
      * as internal {@link QuadNode}s do not store colors.
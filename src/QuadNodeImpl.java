@@ -5,6 +5,8 @@ public class QuadNodeImpl implements QuadNode {
     
     private int color, dimension;
     private QuadNode tl, tr, br, bl;
+    //optional summary of the colors below an internal node, maintained by QuadTreeImpl
+    private ColorCounts counts;
     
 
     QuadNodeImpl(int dimension, int color) {
@@ -42,6 +44,15 @@ public class QuadNodeImpl implements QuadNode {
         this.color = color;  
     }
 
+    /**
+     * Leaves return their color, internal nodes the average cached when their quadrants were
+     * last set.
+     */
+    @Override
+    public int getAverageColor() {
+        return color;
+    }
+
     @Override
     public QuadNode getQuadrant(QuadName quadrant) {
         
@@ -62,11 +73,7 @@ public class QuadNodeImpl implements QuadNode {
 
     @Override
     public boolean isLeaf() {
-        if (this.getSize() == 1) {
-            return true;
-        }
-        return false;
-        
+        return tl == null && tr == null && br == null && bl == null;
     }
 
     @Override
@@ -107,5 +114,30 @@ public class QuadNodeImpl implements QuadNode {
         } else {
             this.tr = value;
         } 
+        //internal nodes keep the average of their children in place of a color
+        if (tl != null && tr != null && br != null && bl != null) {
+            this.color = averageColor(tl.getAverageColor(), tr.getAverageColor(), 
+                    br.getAverageColor(), bl.getAverageColor());
+        }
+    }
+    
+    ColorCounts getColorCounts() {
+        return counts;
+    }
+    
+    void setColorCounts(ColorCounts counts) {
+        this.counts = counts;
+    }
+    
+    /**
+     * Averages four colors channel by channel with rounding, treating each of the four bytes as a
+     * channel. Two channels are averaged at a time in the 16-bit lanes of an int.
+     */
+    static int averageColor(int a, int b, int c, int d) {
+        int mask = 0x00FF00FF;
+        int even = (a & mask) + (b & mask) + (c & mask) + (d & mask) + 0x00020002;
+        int odd = ((a >>> 8) & mask) + ((b >>> 8) & mask) + ((c >>> 8) & mask) 
+                + ((d >>> 8) & mask) + 0x00020002;
+        return ((even >>> 2) & mask) | (((odd >>> 2) & mask) << 8);
     }
 }
\ No newline at end of file
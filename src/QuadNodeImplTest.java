@@ -23,6 +23,18 @@ public class QuadNodeImplTest {
         assertEquals(165, quadNode.getColor());
     }
 
+    @Test
+    public void testGetAverageColor() {
+        assertEquals(-1, quadNode.getAverageColor());
+        QuadNode parent = new QuadNodeImpl(2);
+        parent.setQuadrant(QuadNode.QuadName.TOP_LEFT, new QuadNodeImpl(1, 0x000000));
+        parent.setQuadrant(QuadNode.QuadName.TOP_RIGHT, new QuadNodeImpl(1, 0x0000FF));
+        parent.setQuadrant(QuadNode.QuadName.BOTTOM_LEFT, new QuadNodeImpl(1, 0x00FF00));
+        parent.setQuadrant(QuadNode.QuadName.BOTTOM_RIGHT, new QuadNodeImpl(1, 0xFF0000));
+        assertFalse(parent.isLeaf());
+        assertEquals(0x404040, parent.getAverageColor());
+    }
+
     @Test
     public void testGetQuadrant() {
         assertNull(quadNode.getQuadrant(QuadNode.QuadName.TOP_LEFT));
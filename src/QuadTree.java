@@ -1,3 +1,5 @@
+import java.util.ArrayDeque;
+
 /**
  * Interface definition of a {@link QuadTree}.
  * <p/>
@@ -33,6 +35,69 @@ public interface QuadTree {
      */
     int getColor(int x, int y);
 
+    /**
+     * Recolors the 4-connected region of equal color that contains {@code (x, y)}, like the paint
+     * bucket of an image editor.
+     * <p/>
+     * The default implementation visits the region pixel by pixel through {@link #getColor(int,
+     * int)} and {@link #setColor(int, int, int)}. Implementations are encouraged to recolor whole
+     * leaves at once instead.
+     *
+     * @param x the {@code x}-coordinate of the seed pixel
+     * @param y the {@code y}-coordinate of the seed pixel
+     * @param color the new color of the region
+     * @throws IllegalArgumentException if {@code x} or {@code y} is out of bounds
+     */
+    default void floodFill(int x, int y, int color) {
+        int target = getColor(x, y);
+        if (target == color) {
+            return;
+        }
+        int dimension = getDimension();
+        ArrayDeque<int[]> queue = new ArrayDeque<>();
+        setColor(x, y, color);
+        queue.add(new int[] {x, y});
+        int[][] steps = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+        while (!queue.isEmpty()) {
+            int[] pixel = queue.poll();
+            for (int[] step : steps) {
+                int nx = pixel[0] + step[0];
+                int ny = pixel[1] + step[1];
+                if (nx >= 0 && nx < dimension && ny >= 0 && ny < dimension
+                        && getColor(nx, ny) == target) {
+                    setColor(nx, ny, color);
+                    queue.add(new int[] {nx, ny});
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets every pixel of the rectangle with top left corner {@code (x, y)} to {@code color}.
+     * <p/>
+     * The default implementation calls {@link #setColor(int, int, int)} for each pixel.
+     * Implementations are encouraged to replace whole nodes inside the rectangle instead.
+     *
+     * @param x the {@code x}-coordinate of the left edge
+     * @param y the {@code y}-coordinate of the top edge
+     * @param width the width of the rectangle
+     * @param height the height of the rectangle
+     * @param color the color
+     * @throws IllegalArgumentException if the rectangle is not inside the image
+     */
+    default void fillRect(int x, int y, int width, int height, int color) {
+        int dimension = getDimension();
+        if (width < 0 || height < 0 || x < 0 || y < 0 || width > dimension - x
+                || height > dimension - y) {
+            throw new IllegalArgumentException();
+        }
+        for (int row = y; row < y + height; row++) {
+            for (int column = x; column < x + width; column++) {
+                setColor(column, row, color);
+            }
+        }
+    }
+
     /**
      * Gets the dimension of the image encoded by this quadtree. This is the size of the side of the
      * square of pixels covered by the root {@link QuadNode}.
@@ -50,6 +115,37 @@ public interface QuadTree {
      */
     int[][] decompress();
 
+    /**
+     * Decompresses a scaled down version of the image. Level {@code 0} is a single pixel holding
+     * the average color of the whole image, each following level doubles the side length up to
+     * {@link #getDimension()}. Nodes below the requested level are never visited, so the cost is
+     * bounded by {@code 4^level} rather than the size of the tree.
+     *
+     * @param level the level of detail
+     * @return a newly initialized {@code 2^level x 2^level} array of average colors
+     * @throws IllegalArgumentException if {@code level} is negative or {@code 2^level} is larger
+     * than {@link #getDimension()}
+     */
+    default int[][] decompressAtLevel(int level) {
+        return LevelOfDetail.render(this, level);
+    }
+
+    /**
+     * Gets the average color of pixel {@code (x, y)} of the image scaled down to {@code level}.
+     * The coordinates are in the scaled down image, so {@code decompressAtLevel(level)[y][x] ==
+     * getColor(x, y, level)}.
+     *
+     * @param x the {@code x}-coordinate at the requested level
+     * @param y the {@code y}-coordinate at the requested level
+     * @param level the level of detail
+     * @return the average color of the region
+     * @throws IllegalArgumentException if {@code level} is invalid or {@code x} or {@code y} is out
+     * of bounds for it
+     */
+    default int getColor(int x, int y, int level) {
+        return LevelOfDetail.colorAt(this, x, y, level);
+    }
+
     /**
      * Gets the compression ratio of the current quadtree. The compression ratio is defined as the
      * number of {@link QuadNode}s contained in the tree, divided by the number of pixels in the
@@ -0,0 +1,153 @@
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Depth-first binary serialization of {@link QuadTree}s.
+ * <p/>
+ * A stream starts with a magic number and the dimension of the tree, followed by the color
+ * palette of its leaves and then every node in pre-order ({@link QuadNode.QuadName} order for
+ * children). Each node is a single flag byte, {@code 0} for an internal node or {@code 1} for a
+ * leaf, and leaves are followed by their palette index written in 1, 2 or 4 bytes depending on the
+ * size of the palette.
+ *
+ * @author Darshan
+ */
+public final class QuadTreeCodec {
+
+    static final int MAGIC = 0x51545245;
+
+    private static final int INTERNAL = 0;
+    private static final int LEAF = 1;
+
+    private QuadTreeCodec() {
+    }
+
+    /**
+     * Writes {@code tree} to {@code out}. The stream is flushed but not closed.
+     *
+     * @param tree the tree to serialize
+     * @param out the destination
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if {@code tree} is null
+     */
+    public static void write(QuadTree tree, OutputStream out) throws IOException {
+        if (tree == null) {
+            throw new IllegalArgumentException();
+        }
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(tree.getDimension());
+        ColorPalette palette = new ColorPalette();
+        collectColors(tree.getRoot(), palette);
+        writePalette(palette, data);
+        writeNode(tree.getRoot(), palette, data);
+        data.flush();
+    }
+
+    /**
+     * Reads a tree written by {@link #write}.
+     *
+     * @param in the source
+     * @return the decoded tree
+     * @throws IOException if reading fails or the stream is not a serialized tree
+     */
+    public static QuadTree read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a serialized QuadTree");
+        }
+        int dimension = data.readInt();
+        if (dimension <= 0 || Integer.bitCount(dimension) != 1) {
+            throw new IOException("Invalid dimension " + dimension);
+        }
+        ColorPalette palette = readPalette(data);
+        return new QuadTreeImpl(readNode(data, dimension, palette));
+    }
+
+    //helpers shared with the other tree encoders
+    static void collectColors(QuadNode node, ColorPalette palette) {
+        if (node.isLeaf()) {
+            palette.indexOf(node.getColor());
+            return;
+        }
+        for (QuadNode.QuadName quadrant : QuadNode.QuadName.values()) {
+            collectColors(node.getQuadrant(quadrant), palette);
+        }
+    }
+
+    static void writePalette(ColorPalette palette, DataOutput out) throws IOException {
+        out.writeInt(palette.size());
+        for (int i = 0; i < palette.size(); i++) {
+            out.writeInt(palette.getColor(i));
+        }
+    }
+
+    static ColorPalette readPalette(DataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("Invalid palette size " + size);
+        }
+        ColorPalette palette = new ColorPalette();
+        for (int i = 0; i < size; i++) {
+            palette.indexOf(in.readInt());
+        }
+        return palette;
+    }
+
+    static void writeNode(QuadNode node, ColorPalette palette, DataOutput out)
+            throws IOException {
+        if (node.isLeaf()) {
+            out.writeByte(LEAF);
+            writeIndex(palette.indexOf(node.getColor()), palette.getIndexWidth(), out);
+            return;
+        }
+        out.writeByte(INTERNAL);
+        for (QuadNode.QuadName quadrant : QuadNode.QuadName.values()) {
+            writeNode(node.getQuadrant(quadrant), palette, out);
+        }
+    }
+
+    static QuadNode readNode(DataInput in, int dimension, ColorPalette palette)
+            throws IOException {
+        int flag = in.readByte();
+        if (flag == LEAF) {
+            int index = readIndex(palette.getIndexWidth(), in);
+            if (index < 0 || index >= palette.size()) {
+                throw new IOException("Invalid palette index " + index);
+            }
+            return new QuadNodeImpl(dimension, palette.getColor(index));
+        }
+        if (flag != INTERNAL || dimension == 1) {
+            throw new IOException("Corrupt node at dimension " + dimension);
+        }
+        QuadNode node = new QuadNodeImpl(dimension);
+        for (QuadNode.QuadName quadrant : QuadNode.QuadName.values()) {
+            node.setQuadrant(quadrant, readNode(in, dimension / 2, palette));
+        }
+        return node;
+    }
+
+    private static void writeIndex(int index, int width, DataOutput out) throws IOException {
+        if (width == 8) {
+            out.writeByte(index);
+        } else if (width == 16) {
+            out.writeShort(index);
+        } else {
+            out.writeInt(index);
+        }
+    }
+
+    private static int readIndex(int width, DataInput in) throws IOException {
+        if (width == 8) {
+            return in.readUnsignedByte();
+        } else if (width == 16) {
+            return in.readUnsignedShort();
+        }
+        return in.readInt();
+    }
+}
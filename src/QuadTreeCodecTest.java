@@ -0,0 +1,30 @@
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class QuadTreeCodecTest {
+
+    @Test
+    public void testWriteRead() throws IOException {
+        int[][] img = {
+            {1, 1, 2, 2},
+            {1, 1, 2, 2},
+            {2, 3, 2, 3},
+            {3, 3, 1, -1}
+        };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        QuadTreeCodec.write(new QuadTreeImpl(img), out);
+        QuadTree tree = QuadTreeCodec.read(new ByteArrayInputStream(out.toByteArray()));
+        assertArrayEquals(img, tree.decompress());
+        assertEquals(13, tree.getRoot().getSize());
+    }
+
+    @Test (expected = IOException.class)
+    public void testReadGarbage() throws IOException {
+        QuadTreeCodec.read(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5, 6, 7, 8}));
+    }
+}
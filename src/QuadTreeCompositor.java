@@ -0,0 +1,182 @@
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Combines two {@link QuadTree}s of the same dimension without decompressing them.
+ * <p/>
+ * Both trees are walked in lockstep. Whenever a region is uniform in both inputs (or the operation
+ * can be decided from one side alone) the result is produced as a single node, so the cost is
+ * proportional to the number of nodes in the inputs rather than the number of pixels. A leaf that
+ * meets an internal node on the other side is treated as four equal children of half its size.
+ * <p/>
+ * The inputs are never modified and the returned trees share no nodes with them.
+ *
+ * @author Darshan
+ */
+public final class QuadTreeCompositor {
+
+    private QuadTreeCompositor() {
+    }
+
+    /**
+     * Draws {@code top} over {@code base}. Pixels of {@code top} equal to {@code transparentColor}
+     * let the corresponding pixel of {@code base} show through.
+     *
+     * @param base the bottom layer
+     * @param top the top layer
+     * @param transparentColor the color key of {@code top} that is treated as transparent
+     * @return a new {@link QuadTree} holding the composited image
+     * @throws IllegalArgumentException if either tree is null or their dimensions differ
+     */
+    public static QuadTree overlay(QuadTree base, QuadTree top, int transparentColor) {
+        return composite(base, top, (a, b, dimension) -> {
+            if (!b.isLeaf()) {
+                return null;
+            }
+            if (b.getColor() == transparentColor) {
+                return QuadTreeImpl.copyOf(a, dimension);
+            }
+            return new QuadNodeImpl(dimension, b.getColor());
+        });
+    }
+
+    /**
+     * Applies a binary mask to {@code image}. Pixels where {@code mask} is {@code 0} are replaced by
+     * {@code fillColor}, every other pixel keeps the color of {@code image}.
+     *
+     * @param image the image to mask
+     * @param mask the mask
+     * @param fillColor the color of masked out pixels
+     * @return a new {@link QuadTree} holding the masked image
+     * @throws IllegalArgumentException if either tree is null or their dimensions differ
+     */
+    public static QuadTree mask(QuadTree image, QuadTree mask, int fillColor) {
+        return composite(image, mask, (a, b, dimension) -> {
+            if (!b.isLeaf()) {
+                return null;
+            }
+            if (b.getColor() == 0) {
+                return new QuadNodeImpl(dimension, fillColor);
+            }
+            return QuadTreeImpl.copyOf(a, dimension);
+        });
+    }
+
+    /**
+     * Takes the per-channel minimum of the two images.
+     *
+     * @param a the first image
+     * @param b the second image
+     * @return a new {@link QuadTree} holding the result
+     * @throws IllegalArgumentException if either tree is null or their dimensions differ
+     */
+    public static QuadTree min(QuadTree a, QuadTree b) {
+        return combine(a, b, (x, y) -> perChannel(x, y, true));
+    }
+
+    /**
+     * Takes the per-channel maximum of the two images.
+     *
+     * @param a the first image
+     * @param b the second image
+     * @return a new {@link QuadTree} holding the result
+     * @throws IllegalArgumentException if either tree is null or their dimensions differ
+     */
+    public static QuadTree max(QuadTree a, QuadTree b) {
+        return combine(a, b, (x, y) -> perChannel(x, y, false));
+    }
+
+    /**
+     * Takes the bitwise exclusive or of the two images.
+     *
+     * @param a the first image
+     * @param b the second image
+     * @return a new {@link QuadTree} holding the result
+     * @throws IllegalArgumentException if either tree is null or their dimensions differ
+     */
+    public static QuadTree xor(QuadTree a, QuadTree b) {
+        return combine(a, b, (x, y) -> x ^ y);
+    }
+
+    /**
+     * Combines the two images pixel by pixel with {@code operator}. The operator is evaluated once
+     * per pair of overlapping uniform regions, not once per pixel.
+     *
+     * @param a the first image
+     * @param b the second image
+     * @param operator maps a pair of colors to the resulting color
+     * @return a new {@link QuadTree} holding the result
+     * @throws IllegalArgumentException if either tree is null or their dimensions differ
+     */
+    public static QuadTree combine(QuadTree a, QuadTree b, IntBinaryOperator operator) {
+        return composite(a, b, (x, y, dimension) -> {
+            if (!x.isLeaf() || !y.isLeaf()) {
+                return null;
+            }
+            return new QuadNodeImpl(dimension, operator.applyAsInt(x.getColor(), y.getColor()));
+        });
+    }
+
+    /**
+     * Decides the result for a pair of nodes covering the same region.
+     */
+    private interface Rule {
+
+        /**
+         * Returns the node for the region, or {@code null} if both sides need to be split.
+         */
+        QuadNode resolve(QuadNode a, QuadNode b, int dimension);
+    }
+
+    //helper methods
+    private static QuadTree composite(QuadTree a, QuadTree b, Rule rule) {
+        if (a == null || b == null || a.getDimension() != b.getDimension()) {
+            throw new IllegalArgumentException();
+        }
+        return new QuadTreeImpl(walk(a.getRoot(), b.getRoot(), a.getDimension(), rule));
+    }
+
+    private static QuadNode walk(QuadNode a, QuadNode b, int dimension, Rule rule) {
+        QuadNode resolved = rule.resolve(a, b, dimension);
+        if (resolved != null) {
+            return resolved;
+        }
+        QuadNode node = new QuadNodeImpl(dimension);
+        for (QuadNode.QuadName quadrant : QuadNode.QuadName.values()) {
+            node.setQuadrant(quadrant,
+                    walk(child(a, quadrant), child(b, quadrant), dimension / 2, rule));
+        }
+        return merge(node);
+    }
+
+    private static QuadNode child(QuadNode node, QuadNode.QuadName quadrant) {
+        //a leaf stands in for all four of its quadrants
+        if (node.isLeaf()) {
+            return node;
+        }
+        return node.getQuadrant(quadrant);
+    }
+
+    private static QuadNode merge(QuadNode node) {
+        QuadNode tl = node.getQuadrant(QuadNode.QuadName.TOP_LEFT);
+        QuadNode tr = node.getQuadrant(QuadNode.QuadName.TOP_RIGHT);
+        QuadNode br = node.getQuadrant(QuadNode.QuadName.BOTTOM_RIGHT);
+        QuadNode bl = node.getQuadrant(QuadNode.QuadName.BOTTOM_LEFT);
+        if (tl.isLeaf() && tr.isLeaf() && br.isLeaf() && bl.isLeaf()) {
+            int color = tl.getColor();
+            if (tr.getColor() == color && br.getColor() == color && bl.getColor() == color) {
+                return new QuadNodeImpl(node.getDimension(), color);
+            }
+        }
+        return node;
+    }
+
+    private static int perChannel(int x, int y, boolean min) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int cx = (x >>> shift) & 0xFF;
+            int cy = (y >>> shift) & 0xFF;
+            result |= (min ? Math.min(cx, cy) : Math.max(cx, cy)) << shift;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,80 @@
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class QuadTreeCompositorTest {
+
+    QuadTree base, top, flat;
+    int[][] baseImg, topImg;
+    @Before
+    public void setUp() {
+        baseImg = new int[][] {
+            {1, 1, 2, 2},
+            {1, 1, 2, 2},
+            {2, 3, 2, 3},
+            {3, 3, 1, 1}
+        };
+        topImg = new int[][] {
+            {0, 0, 5, 0},
+            {0, 0, 5, 5},
+            {0, 0, 0, 0},
+            {0, 0, 0, 0}
+        };
+        base = new QuadTreeImpl(baseImg);
+        top = new QuadTreeImpl(topImg);
+        flat = new QuadTreeImpl(new int[4][4]);
+    }
+
+    @Test
+    public void testOverlay() {
+        int[][] expected = {
+            {1, 1, 5, 2},
+            {1, 1, 5, 5},
+            {2, 3, 2, 3},
+            {3, 3, 1, 1}
+        };
+        assertArrayEquals(expected, QuadTreeCompositor.overlay(base, top, 0).decompress());
+        assertArrayEquals(baseImg, base.decompress());
+    }
+
+    @Test
+    public void testOverlayUniformStaysLeaf() {
+        QuadTree result = QuadTreeCompositor.overlay(flat, new QuadTreeImpl(new int[4][4]), 7);
+        assertTrue(result.getRoot().isLeaf());
+        assertEquals(0, result.getRoot().getColor());
+    }
+
+    @Test
+    public void testMask() {
+        int[][] expected = {
+            {9, 9, 2, 9},
+            {9, 9, 2, 2},
+            {9, 9, 9, 9},
+            {9, 9, 9, 9}
+        };
+        assertArrayEquals(expected, QuadTreeCompositor.mask(base, top, 9).decompress());
+    }
+
+    @Test
+    public void testMinMaxXor() {
+        QuadTree a = new QuadTreeImpl(new int[][] {{0x102030, 0x102030}, {0x102030, 0x102030}});
+        QuadTree b = new QuadTreeImpl(new int[][] {{0x301020, 0x301020}, {0x301020, 0}});
+        assertEquals(0x101020, QuadTreeCompositor.min(a, b).decompress()[0][0]);
+        assertEquals(0x302030, QuadTreeCompositor.max(a, b).decompress()[0][0]);
+        assertEquals(0x102030, QuadTreeCompositor.max(a, b).decompress()[1][1]);
+        assertEquals(0x102030 ^ 0x301020, QuadTreeCompositor.xor(a, b).decompress()[0][1]);
+    }
+
+    @Test
+    public void testXorWithSelfCollapses() {
+        QuadTree result = QuadTreeCompositor.xor(base, base);
+        assertTrue(result.getRoot().isLeaf());
+        assertEquals(0, result.getRoot().getColor());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testDimensionMismatch() {
+        QuadTreeCompositor.xor(base, new QuadTreeImpl(new int[2][2]));
+    }
+}
@@ -0,0 +1,216 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The difference between two {@link QuadTree}s of the same dimension, expressed as the list of
+ * subtrees of the newer tree that differ from the older one.
+ * <p/>
+ * {@link #diff} walks both trees in lockstep and skips every region where they agree, so its cost
+ * is proportional to the nodes that are visited rather than the pixels. Applying the delta
+ * replaces each changed subtree in place, which for a {@link QuadTreeImpl} costs the size of the
+ * patches plus one root-to-patch path each.
+ *
+ * @author Darshan
+ */
+public class QuadTreeDelta {
+
+    static final int MAGIC = 0x51544446;
+
+    private final int dimension;
+    private final List<Patch> patches;
+
+    private QuadTreeDelta(int dimension, List<Patch> patches) {
+        this.dimension = dimension;
+        this.patches = patches;
+    }
+
+    /**
+     * Computes the changes that turn {@code from} into {@code to}.
+     *
+     * @param from the older tree
+     * @param to the newer tree
+     * @return the delta between the two trees
+     * @throws IllegalArgumentException if either tree is null or their dimensions differ
+     */
+    public static QuadTreeDelta diff(QuadTree from, QuadTree to) {
+        if (from == null || to == null || from.getDimension() != to.getDimension()) {
+            throw new IllegalArgumentException();
+        }
+        List<Patch> patches = new ArrayList<>();
+        diff(from.getRoot(), to.getRoot(), 0, 0, to.getDimension(), patches);
+        return new QuadTreeDelta(to.getDimension(), patches);
+    }
+
+    /**
+     * Applies this delta to {@code target} in place. After this call {@code target} holds the image
+     * that was passed as {@code to} to {@link #diff}, provided it held the {@code from} image before.
+     *
+     * @param target the tree to patch
+     * @throws IllegalArgumentException if {@code target} is null or has a different dimension
+     */
+    public void apply(QuadTree target) {
+        if (target == null || target.getDimension() != dimension) {
+            throw new IllegalArgumentException();
+        }
+        for (Patch patch : patches) {
+            if (target instanceof QuadTreeImpl) {
+                ((QuadTreeImpl) target).replace(patch.x, patch.y, patch.node);
+            } else {
+                paint(target, patch.node, patch.x, patch.y);
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if the two trees passed to {@link #diff} held the same image.
+     *
+     * @return {@code true} if there are no changes
+     */
+    public boolean isEmpty() {
+        return patches.isEmpty();
+    }
+
+    /**
+     * Returns the number of changed subtrees in this delta.
+     *
+     * @return the number of patches
+     */
+    public int getPatchCount() {
+        return patches.size();
+    }
+
+    /**
+     * Returns the dimension of the trees this delta applies to.
+     *
+     * @return the dimension
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Serializes this delta to {@code out}. The stream is flushed but not closed.
+     *
+     * @param out the destination
+     * @throws IOException if writing fails
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(dimension);
+        ColorPalette palette = new ColorPalette();
+        for (Patch patch : patches) {
+            QuadTreeCodec.collectColors(patch.node, palette);
+        }
+        QuadTreeCodec.writePalette(palette, data);
+        data.writeInt(patches.size());
+        for (Patch patch : patches) {
+            data.writeInt(patch.x);
+            data.writeInt(patch.y);
+            data.writeInt(patch.node.getDimension());
+            QuadTreeCodec.writeNode(patch.node, palette, data);
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a delta written by {@link #write}.
+     *
+     * @param in the source
+     * @return the decoded delta
+     * @throws IOException if reading fails or the stream is not a serialized delta
+     */
+    public static QuadTreeDelta read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a serialized QuadTreeDelta");
+        }
+        int dimension = data.readInt();
+        ColorPalette palette = QuadTreeCodec.readPalette(data);
+        int count = data.readInt();
+        List<Patch> patches = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int x = data.readInt();
+            int y = data.readInt();
+            int size = data.readInt();
+            if (size <= 0 || size > dimension || Integer.bitCount(size) != 1
+                    || x < 0 || y < 0 || x % size != 0 || y % size != 0
+                    || x + size > dimension || y + size > dimension) {
+                throw new IOException("Invalid patch at (" + x + ", " + y + ")");
+            }
+            patches.add(new Patch(x, y, QuadTreeCodec.readNode(data, size, palette)));
+        }
+        return new QuadTreeDelta(dimension, patches);
+    }
+
+    //helper methods
+    private static void diff(QuadNode from, QuadNode to, int left, int top, int size,
+            List<Patch> patches) {
+        if (from == to) {
+            return;
+        }
+        if (to.isLeaf()) {
+            if (!from.isLeaf() || from.getColor() != to.getColor()) {
+                patches.add(new Patch(left, top, QuadTreeImpl.copyOf(to, size)));
+            }
+            return;
+        }
+        //an unchanged leaf in from stands in for all four quadrants of to
+        int half = size / 2;
+        diff(child(from, QuadNode.QuadName.TOP_LEFT), to.getQuadrant(QuadNode.QuadName.TOP_LEFT),
+                left, top, half, patches);
+        diff(child(from, QuadNode.QuadName.TOP_RIGHT),
+                to.getQuadrant(QuadNode.QuadName.TOP_RIGHT), left + half, top, half, patches);
+        diff(child(from, QuadNode.QuadName.BOTTOM_LEFT),
+                to.getQuadrant(QuadNode.QuadName.BOTTOM_LEFT), left, top + half, half, patches);
+        diff(child(from, QuadNode.QuadName.BOTTOM_RIGHT),
+                to.getQuadrant(QuadNode.QuadName.BOTTOM_RIGHT), left + half, top + half, half,
+                patches);
+    }
+
+    private static QuadNode child(QuadNode node, QuadNode.QuadName quadrant) {
+        if (node.isLeaf()) {
+            return node;
+        }
+        return node.getQuadrant(quadrant);
+    }
+
+    private static void paint(QuadTree target, QuadNode node, int left, int top) {
+        int size = node.getDimension();
+        if (node.isLeaf()) {
+            int color = node.getColor();
+            for (int y = top; y < top + size; y++) {
+                for (int x = left; x < left + size; x++) {
+                    target.setColor(x, y, color);
+                }
+            }
+            return;
+        }
+        int half = size / 2;
+        paint(target, node.getQuadrant(QuadNode.QuadName.TOP_LEFT), left, top);
+        paint(target, node.getQuadrant(QuadNode.QuadName.TOP_RIGHT), left + half, top);
+        paint(target, node.getQuadrant(QuadNode.QuadName.BOTTOM_LEFT), left, top + half);
+        paint(target, node.getQuadrant(QuadNode.QuadName.BOTTOM_RIGHT), left + half, top + half);
+    }
+
+    /**
+     * A replacement subtree anchored at its top-left pixel.
+     */
+    private static class Patch {
+
+        private final int x;
+        private final int y;
+        private final QuadNode node;
+
+        Patch(int x, int y, QuadNode node) {
+            this.x = x;
+            this.y = y;
+            this.node = node;
+        }
+    }
+}
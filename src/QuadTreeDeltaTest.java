@@ -0,0 +1,81 @@
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class QuadTreeDeltaTest {
+
+    QuadTree from, to;
+    int[][] fromImg, toImg;
+    @Before
+    public void setUp() {
+        fromImg = new int[8][8];
+        toImg = new int[8][8];
+        toImg[5][6] = 4;
+        toImg[0][0] = 9;
+        toImg[0][1] = 9;
+        toImg[1][0] = 9;
+        toImg[1][1] = 9;
+        from = new QuadTreeImpl(fromImg);
+        to = new QuadTreeImpl(toImg);
+    }
+
+    @Test
+    public void testDiffOnlyChangedSubtrees() {
+        QuadTreeDelta delta = QuadTreeDelta.diff(from, to);
+        assertEquals(2, delta.getPatchCount());
+        assertTrue(QuadTreeDelta.diff(to, to).isEmpty());
+    }
+
+    @Test
+    public void testApply() {
+        QuadTreeDelta.diff(from, to).apply(from);
+        assertArrayEquals(toImg, from.decompress());
+        assertEquals(to.getRoot().getSize(), from.getRoot().getSize());
+    }
+
+    @Test
+    public void testApplyMerges() {
+        QuadTreeDelta.diff(to, from).apply(to);
+        assertTrue(to.getRoot().isLeaf());
+        assertEquals(0, to.getRoot().getColor());
+    }
+
+    @Test
+    public void testWriteRead() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        QuadTreeDelta.diff(from, to).write(out);
+        QuadTreeDelta delta = QuadTreeDelta.read(new ByteArrayInputStream(out.toByteArray()));
+        delta.apply(from);
+        assertArrayEquals(toImg, from.decompress());
+    }
+
+    @Test
+    public void testFrameSequence() throws IOException {
+        FrameSequence sequence = new FrameSequence(3);
+        int[][] img = new int[8][8];
+        for (int i = 0; i < 7; i++) {
+            img[i][i] = i + 1;
+            sequence.addFrame(new QuadTreeImpl(img));
+        }
+        assertTrue(sequence.getEncodedSize(1) < sequence.getEncodedSize(0));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sequence.write(out);
+        FrameSequence read = FrameSequence.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(7, read.size());
+        for (int i = 0; i < 7; i++) {
+            assertEquals(i + 1, read.getFrame(i).decompress()[i][i]);
+            assertEquals(i + 1, read.getFrame(6).decompress()[i][i]);
+        }
+        assertEquals(0, read.getFrame(2).decompress()[3][3]);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testDimensionMismatch() {
+        QuadTreeDelta.diff(from, new QuadTreeImpl(new int[2][2]));
+    }
+}
@@ -0,0 +1,244 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes {@link QuadTree}s to files without decompressing them first.
+ * <p/>
+ * The image is rendered from the tree one band of rows at a time, straight into the encoder, so
+ * no more than {@link #BAND_PIXELS} pixels are held at once however large the image is. Raw
+ * exports are rows of {@code R, G, B, A} bytes written through a {@link FileChannel}. PNG exports
+ * are assembled here from their {@code IHDR}, {@code IDAT} and {@code IEND} chunks, with the rows
+ * compressed by a {@link Deflater} as they are rendered.
+ * <p/>
+ * Without {@code keepAlpha} the alpha byte of every color is ignored, as in {@link SimplePaint}:
+ * raw exports write an opaque alpha and PNG exports leave out the alpha channel.
+ *
+ * @author Darshan
+ */
+public final class QuadTreeExporter {
+
+    /**
+     * The most pixels rendered at once.
+     */
+    public static final int BAND_PIXELS = 1 << 16;
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A,
+        '\n'};
+    //the size of the IDAT chunks, as written by most encoders
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private QuadTreeExporter() {
+    }
+
+    /**
+     * Writes {@code tree} as raw pixels, each as the four bytes {@code R, G, B, A}, row after row
+     * from the top.
+     *
+     * @param tree the image
+     * @param file the file to create or replace
+     * @param keepAlpha whether to write the alpha byte of every color instead of {@code 0xFF}
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if {@code tree} or {@code file} is null
+     */
+    public static void writeRaw(QuadTree tree, Path file, boolean keepAlpha) throws IOException {
+        if (tree == null || file == null) {
+            throw new IllegalArgumentException();
+        }
+        int dimension = tree.getDimension();
+        int rows = bandRows(dimension);
+        int[] band = new int[rows * dimension];
+        ByteBuffer bytes = ByteBuffer.allocateDirect(band.length * 4);
+        IntBuffer pixels = bytes.asIntBuffer();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (int y = 0; y < dimension; y += rows) {
+                render(tree, y, rows, band);
+                for (int i = 0; i < band.length; i++) {
+                    int color = band[i];
+                    band[i] = color << 8 | (keepAlpha ? color >>> 24 : 0xFF);
+                }
+                //the buffer is big endian, so every int is stored as R, G, B, A
+                pixels.clear();
+                pixels.put(band);
+                bytes.clear();
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes {@code tree} as a PNG file.
+     *
+     * @param tree the image
+     * @param file the file to create or replace
+     * @param keepAlpha whether to store the alpha channel
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if {@code tree} or {@code file} is null
+     */
+    public static void writePng(QuadTree tree, Path file, boolean keepAlpha) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException();
+        }
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            writePng(tree, out, keepAlpha, Deflater.DEFAULT_COMPRESSION);
+        }
+    }
+
+    /**
+     * Writes {@code tree} to {@code out} as a PNG image. The stream is not closed.
+     *
+     * @param tree the image
+     * @param out the stream to write to
+     * @param keepAlpha whether to store the alpha channel
+     * @param level the compression level of the {@link Deflater}, from {@code 0} to {@code 9}
+     * or {@link Deflater#DEFAULT_COMPRESSION}
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if {@code tree} or {@code out} is null or {@code level}
+     * is invalid
+     */
+    public static void writePng(QuadTree tree, OutputStream out, boolean keepAlpha, int level)
+            throws IOException {
+        if (tree == null || out == null || level < Deflater.DEFAULT_COMPRESSION || level > 9) {
+            throw new IllegalArgumentException();
+        }
+        int dimension = tree.getDimension();
+        int channels = keepAlpha ? 4 : 3;
+        out.write(PNG_SIGNATURE);
+        DataOutputStream header = new DataOutputStream(new ChunkStream(out, "IHDR"));
+        header.writeInt(dimension);
+        header.writeInt(dimension);
+        header.writeByte(8);
+        //color type 6 is RGBA, 2 is RGB
+        header.writeByte(keepAlpha ? 6 : 2);
+        //deflate compression, adaptive filtering, no interlacing
+        header.writeByte(0);
+        header.writeByte(0);
+        header.writeByte(0);
+        header.close();
+
+        int rows = bandRows(dimension);
+        int[] band = new int[rows * dimension];
+        int stride = 1 + dimension * channels;
+        byte[] scanlines = new byte[rows * stride];
+        Deflater deflater = new Deflater(level);
+        try {
+            //closing finishes the deflater and writes the last IDAT chunk
+            try (DeflaterOutputStream idat = new DeflaterOutputStream(new ChunkStream(out, "IDAT"),
+                    deflater, CHUNK_SIZE)) {
+                for (int y = 0; y < dimension; y += rows) {
+                    render(tree, y, rows, band);
+                    int position = 0;
+                    for (int row = 0; row < rows; row++) {
+                        //filter type 0 stores the row unchanged
+                        scanlines[position++] = 0;
+                        for (int x = row * dimension; x < (row + 1) * dimension; x++) {
+                            int color = band[x];
+                            scanlines[position++] = (byte) (color >>> 16);
+                            scanlines[position++] = (byte) (color >>> 8);
+                            scanlines[position++] = (byte) color;
+                            if (keepAlpha) {
+                                scanlines[position++] = (byte) (color >>> 24);
+                            }
+                        }
+                    }
+                    idat.write(scanlines);
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+        new ChunkStream(out, "IEND").close();
+    }
+
+    //helper methods
+    private static int bandRows(int dimension) {
+        return Math.max(1, Math.min(dimension, BAND_PIXELS / dimension));
+    }
+
+    private static void render(QuadTree tree, int y, int rows, int[] band) {
+        int dimension = tree.getDimension();
+        LevelOfDetail.renderWindow(tree, Integer.numberOfTrailingZeros(dimension), 0, y,
+                dimension, rows, band);
+    }
+
+    /**
+     * Collects what is written to it into PNG chunks of one type, each with its length and
+     * checksum, and writes them to the underlying stream. Closing writes the last chunk, which
+     * may be empty, but does not close the underlying stream.
+     */
+    private static class ChunkStream extends OutputStream {
+
+        private final OutputStream out;
+        private final byte[] type;
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private int count;
+        private boolean closed;
+
+        ChunkStream(OutputStream out, String type) {
+            this.out = out;
+            this.type = type.getBytes(StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                flushChunk();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length) {
+                    flushChunk();
+                }
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                flushChunk();
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            CRC32 crc = new CRC32();
+            crc.update(type);
+            crc.update(buffer, 0, count);
+            writeInt(count);
+            out.write(type);
+            out.write(buffer, 0, count);
+            writeInt((int) crc.getValue());
+            count = 0;
+        }
+
+        private void writeInt(int value) throws IOException {
+            out.write(value >>> 24);
+            out.write(value >>> 16);
+            out.write(value >>> 8);
+            out.write(value);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import static org.junit.Assert.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class QuadTreeExporterTest {
+
+    Path file;
+    int[][] img;
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("export", null);
+        //more rows than fit in one band, with flat, dense and translucent regions
+        img = new int[512][512];
+        for (int y = 0; y < 512; y++) {
+            for (int x = 0; x < 512; x++) {
+                if (y < 256) {
+                    img[y][x] = 0x203040;
+                } else if (x < 256) {
+                    img[y][x] = (x * 7 + y * 13) % 251 * 0x010101;
+                } else {
+                    img[y][x] = 0x80FF0000 | x;
+                }
+            }
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testPng() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        QuadTreeExporter.writePng(new QuadTreeImpl(img), out, false,
+                Deflater.DEFAULT_COMPRESSION);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(512, image.getWidth());
+        assertEquals(512, image.getHeight());
+        assertFalse(image.getColorModel().hasAlpha());
+        for (int y = 0; y < 512; y++) {
+            for (int x = 0; x < 512; x++) {
+                assertEquals(img[y][x] & 0xFFFFFF, image.getRGB(x, y) & 0xFFFFFF);
+            }
+        }
+    }
+
+    @Test
+    public void testPngWithAlpha() throws IOException {
+        QuadTreeExporter.writePng(new QuadTreeImpl(img), file, true);
+        BufferedImage image = ImageIO.read(file.toFile());
+        assertTrue(image.getColorModel().hasAlpha());
+        for (int y = 0; y < 512; y += 3) {
+            for (int x = 0; x < 512; x += 3) {
+                assertEquals(img[y][x], image.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testRaw() throws IOException {
+        QuadTreeExporter.writeRaw(new QuadTreeImpl(img), file, true);
+        byte[] bytes = Files.readAllBytes(file);
+        assertEquals(512 * 512 * 4, bytes.length);
+        for (int y = 0; y < 512; y++) {
+            for (int x = 0; x < 512; x++) {
+                int i = (y * 512 + x) * 4;
+                int color = (bytes[i + 3] & 0xFF) << 24 | (bytes[i] & 0xFF) << 16
+                        | (bytes[i + 1] & 0xFF) << 8 | (bytes[i + 2] & 0xFF);
+                assertEquals(img[y][x], color);
+            }
+        }
+        //without alpha every pixel is opaque
+        QuadTreeExporter.writeRaw(new QuadTreeImpl(img), file, false);
+        bytes = Files.readAllBytes(file);
+        assertEquals((byte) 0xFF, bytes[(300 * 512 + 300) * 4 + 3]);
+        assertEquals(512 * 512 * 4, bytes.length);
+    }
+
+    @Test
+    public void testSinglePixel() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        QuadTreeExporter.writePng(new QuadTreeImpl(new int[][] {{0x123456}}), out, false, 9);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(1, image.getWidth());
+        assertEquals(0x123456, image.getRGB(0, 0) & 0xFFFFFF);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testInvalidLevel() throws IOException {
+        QuadTreeExporter.writePng(new QuadTreeImpl(img), new ByteArrayOutputStream(), false, 10);
+    }
+}
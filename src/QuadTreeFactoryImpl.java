@@ -20,7 +20,12 @@ public class QuadTreeFactoryImpl implements QuadTreeFactory {
         if (imageData.length != rowLength) {
             throw new IllegalArgumentException();
         }
-        QuadTree quadTree = new QuadTreeImpl(imageData);
+        QuadTree quadTree = createQuadTree(imageData);
         return quadTree;        
     }
+    
+    //builds the tree once imageData has been validated
+    protected QuadTree createQuadTree(int[][] imageData) {
+        return new QuadTreeImpl(imageData);
+    }
 }
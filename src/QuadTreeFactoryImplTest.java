@@ -1,5 +1,7 @@
 import static org.junit.Assert.*;
 
+import java.awt.image.BufferedImage;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -27,4 +29,18 @@ public class QuadTreeFactoryImplTest {
         img = new int[2][1];
         quadFactory.buildFromIntArray(img);
     }
+
+    @Test
+    public void testBuildFromImageAlpha() {
+        BufferedImage image = new BufferedImage(3, 2, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, 0x80FF0000);
+        image.setRGB(2, 1, 0x1200FF00);
+        QuadTree opaque = SimplePaint.buildFromImage(quadFactory, image);
+        assertEquals(4, opaque.getDimension());
+        assertEquals(0xFF0000, opaque.getColor(0, 0));
+        assertEquals(0x00FF00, opaque.getColor(2, 1));
+        QuadTree translucent = SimplePaint.buildFromImage(quadFactory, image, true);
+        assertEquals(0x80FF0000, translucent.getColor(0, 0));
+        assertEquals(0x1200FF00, translucent.getColor(2, 1));
+    }
 }
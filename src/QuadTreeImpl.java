@@ -1,19 +1,68 @@
+import java.lang.ref.SoftReference;
+import java.nio.IntBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Arrays;
+
 /*
  * @author Darshan
  */
 public class QuadTreeImpl implements QuadTree {
     
+    /**
+     * A good block size for {@link #QuadTreeImpl(int[][], int)} on noisy images, such as photos.
+     */
+    public static final int DENSE_BLOCK_SIZE = 8;
+    
+    //a QuadNodeImpl takes about as much memory as this many pixels of a dense block
+    private static final int NODE_WEIGHT = 8;
+    
+    //the largest image whose pixels fit in one array
+    private static final int MAX_CACHED_DIMENSION = 1 << 15;
+    
     private QuadNode root;
+    private boolean colorCountsCached;
+    private final int blockSize;
+    private int modCount;
+    private boolean decompressionCached;
+    //the decompressed image row by row, stale only inside the dirty rectangle
+    private SoftReference<int[]> pixels;
+    private int dirtyMinX;
+    private int dirtyMinY;
+    private int dirtyMaxX;
+    private int dirtyMaxY;
     
     public QuadTreeImpl(int[][] imageData) {
-        int length = imageData.length;
-        if (length == 1) {
-            root = new QuadNodeImpl(length, imageData[0][0]);
-        } else {
-            root = segmentation(length / 2, length / 2, imageData, length);
-            root = segmentation(length / 2, length / 2, imageData, length);
+        this(imageData, 0);
+    }
+    
+    /**
+     * Builds the tree, storing every {@code blockSize x blockSize} block that would need more
+     * memory as nodes than as raw pixels in a {@link DenseBlockNode}. Blocks switch between the
+     * two forms as edits make them more or less compressible, which bounds the memory of the tree
+     * to roughly that of the raw image on noisy content. Dense blocks do not support
+     * {@link QuadNode#setQuadrant}, so code that rewires the nodes of {@link #getRoot()} needs a
+     * tree built with a {@code blockSize} of {@code 0}, which is what {@link #QuadTreeImpl(int[][])}
+     * builds.
+     *
+     * @param imageData the image
+     * @param blockSize a power of two of at least {@code 2}, or {@code 0} to only use nodes
+     * @throws IllegalArgumentException if {@code blockSize} is invalid
+     */
+    public QuadTreeImpl(int[][] imageData, int blockSize) {
+        if (blockSize != 0 && (blockSize < 2 || Integer.bitCount(blockSize) != 1)) {
+            throw new IllegalArgumentException();
         }
-        
+        this.blockSize = blockSize;
+        root = segmentation(0, 0, imageData, imageData.length);
+    }
+    
+    //wraps an already built tree, used by operations that construct nodes directly
+    QuadTreeImpl(QuadNode root) {
+        this.root = root;
+        this.blockSize = 0;
     }
     
     @Override
@@ -22,7 +71,8 @@ public class QuadTreeImpl implements QuadTree {
         if (x < 0 || x >= root.getDimension() || y < 0 || y >= root.getDimension()) {
             throw new IllegalArgumentException();
         }
-        colorSet(root, root.getDimension() / 2, root.getDimension() / 2, x, y, color);
+        root = colorSet(root, 0, 0, x, y, color);
+        modified(x, y, x + 1, y + 1);
     }
     
     @Override
@@ -30,7 +80,7 @@ public class QuadTreeImpl implements QuadTree {
         if (x < 0 || x >= root.getDimension() || y < 0 || y >= root.getDimension()) {
             throw new IllegalArgumentException();
         }
-        int color = colorGet(root, root.getDimension() / 2, root.getDimension() / 2, x, y);
+        int color = colorGet(root, 0, 0, x, y);
         return color;
         
     }
@@ -40,19 +90,46 @@ public class QuadTreeImpl implements QuadTree {
         return root.getDimension();
     }
 
+    /**
+     * While {@link #setDecompressionCached} is on, copies the cached image instead of walking the
+     * tree.
+     */
     @Override
     public int[][] decompress() {
 
         int dimension = root.getDimension();
+        if (decompressionCached && dimension <= MAX_CACHED_DIMENSION) {
+            int[] cached = cachedPixels();
+            int[][] result = new int[dimension][];
+            for (int y = 0; y < dimension; y++) {
+                result[y] = Arrays.copyOfRange(cached, y * dimension, (y + 1) * dimension);
+            }
+            return result;
+        }
         int[][] temp = new int[dimension][dimension];
         populateImg(root, dimension / 2, dimension / 2, temp);
         return temp;
   
     }
     
+    /**
+     * A {@link DenseBlockNode} counts as the nodes of the subtree it replaces. See
+     * {@link #getStorageRatio()} for the memory the tree actually takes.
+     */
     @Override
     public double getCompressionRatio() {
-        return root.getSize() / (getDimension() * getDimension());
+        return (double) root.getSize() / ((long) getDimension() * getDimension());
+    }
+    
+    /**
+     * Returns the memory taken by the tree relative to the raw image, where {@code 1.0} is one
+     * {@code int} per pixel. Every node counts as 8 pixels, about what a {@link QuadNodeImpl}
+     * takes, and a {@link DenseBlockNode} as the pixels it stores.
+     *
+     * @return the storage cost per pixel
+     */
+    public double getStorageRatio() {
+        return (double) storageSize(root) / ((long) getDimension() * getDimension());
     }
 
     @Override
@@ -60,223 +137,543 @@ public class QuadTreeImpl implements QuadTree {
         return root;
     }
     
+    /**
+     * Recolors whole leaves at a time. Leaves next to a filled leaf are found by descending from
+     * the root to the node of equal size on the other side of each edge, so the cost depends on
+     * the number of leaves in the region and on its boundary rather than its area.
+     */
+    @Override
+    public void floodFill(int x, int y, int color) throws IllegalArgumentException {
+        int target = getColor(x, y);
+        if (target == color) {
+            return;
+        }
+        int dimension = getDimension();
+        int minX = dimension;
+        int minY = dimension;
+        int maxX = 0;
+        int maxY = 0;
+        QuadTreeSpatialIndex index = new QuadTreeSpatialIndex(this);
+        QuadTreeSpatialIndex.Direction[] edges = {QuadTreeSpatialIndex.Direction.WEST, 
+            QuadTreeSpatialIndex.Direction.EAST, QuadTreeSpatialIndex.Direction.NORTH, 
+            QuadTreeSpatialIndex.Direction.SOUTH};
+        QuadTreeSpatialIndex.Leaf seed = index.locate(x, y);
+        seed.getNode().setColor(color);
+        ArrayDeque<QuadTreeSpatialIndex.Leaf> queue = new ArrayDeque<>();
+        List<QuadTreeSpatialIndex.Leaf> filled = new ArrayList<>();
+        queue.add(seed);
+        //recoloring a leaf when it is queued also marks it as visited
+        while (!queue.isEmpty()) {
+            QuadTreeSpatialIndex.Leaf leaf = queue.poll();
+            filled.add(leaf);
+            minX = Math.min(minX, leaf.getX());
+            minY = Math.min(minY, leaf.getY());
+            maxX = Math.max(maxX, leaf.getX() + leaf.getSize());
+            maxY = Math.max(maxY, leaf.getY() + leaf.getSize());
+            for (QuadTreeSpatialIndex.Direction edge : edges) {
+                for (QuadTreeSpatialIndex.Leaf neighbour : index.neighbours(leaf, edge)) {
+                    if (neighbour.getColor() == target) {
+                        neighbour.getNode().setColor(color);
+                        queue.add(neighbour);
+                    }
+                }
+            }
+        }
+        root = refresh(root, 0, 0, filled, 0, filled.size());
+        modified(minX, minY, maxX, maxY);
+    }
+    
+    /**
+     * Replaces every node that lies inside the rectangle with a single leaf, so the cost depends on
+     * the length of the rectangle's border rather than its area.
+     */
+    @Override
+    public void fillRect(int x, int y, int width, int height, int color) 
+            throws IllegalArgumentException {
+        int dimension = getDimension();
+        if (width < 0 || height < 0 || x < 0 || y < 0 || width > dimension - x 
+                || height > dimension - y) {
+            throw new IllegalArgumentException();
+        }
+        if (width > 0 && height > 0) {
+            root = rectFill(root, 0, 0, x, y, x + width, y + height, color);
+            modified(x, y, x + width, y + height);
+        }
+    }
+    
+    /**
+     * Turns the per-node cache of {@link ColorCounts} on or off. While it is on, every internal
+     * node keeps a summary of its most common colors that is updated along the edited path on
+     * each change, which lets {@link QuadTreeStatistics} answer queries about fully covered
+     * subtrees without visiting their leaves.
+     */
+    public void setColorCountsCached(boolean cached) {
+        colorCountsCached = cached;
+        rebuildCounts(root);
+    }
+    
+    public boolean isColorCountsCached() {
+        return colorCountsCached;
+    }
+    
+    /**
+     * Returns the number of edits made through this tree, which changes whenever the image may
+     * have changed. Edits made to the nodes directly are only counted once {@link #compact()} is
+     * called.
+     *
+     * @return the modification count
+     */
+    public int getModCount() {
+        return modCount;
+    }
+    
+    /**
+     * Turns the cache of the decompressed image on or off. While it is on, the tree keeps the
+     * last decompressed image through a {@link SoftReference}, so the garbage collector can drop
+     * it under memory pressure. Edits only mark the region they changed as stale, and the next
+     * read redraws just that region, so repeated calls to {@link #decompress()} on an unchanged
+     * or slightly changed tree cost a copy instead of a walk of the whole tree.
+     */
+    public void setDecompressionCached(boolean cached) {
+        decompressionCached = cached;
+        pixels = null;
+    }
+    
+    public boolean isDecompressionCached() {
+        return decompressionCached;
+    }
+    
+    /**
+     * Returns the image as a read-only buffer of its rows, one after the other, without copying
+     * the cached image. The buffer shares the cache, so it is only guaranteed to show the current
+     * image until the next edit.
+     *
+     * @return the decompressed image
+     * @throws IllegalStateException if the image has more pixels than an array can hold
+     */
+    public IntBuffer decompressView() {
+        if (getDimension() > MAX_CACHED_DIMENSION) {
+            throw new IllegalStateException();
+        }
+        return IntBuffer.wrap(cachedPixels()).asReadOnlyBuffer();
+    }
+    
+    //restores the invariants after the nodes were modified directly, e.g. by pruning
+    void compact() {
+        root = compact(root);
+        modified(0, 0, getDimension(), getDimension());
+    }
+    
+    //replaces the node covering subtree's square at (x, y) with a copy of subtree
+    void replace(int x, int y, QuadNode subtree) {
+        root = replaceNode(root, 0, 0, x, y, subtree);
+        modified(x, y, x + subtree.getDimension(), y + subtree.getDimension());
+    }
+    
+    //deep copy of node, resized to dimension when node is a leaf standing in for a quadrant
+    static QuadNode copyOf(QuadNode node, int dimension) {
+        if (node.isLeaf()) {
+            return new QuadNodeImpl(dimension, node.getColor());
+        }
+        QuadNode copy = new QuadNodeImpl(dimension);
+        for (QuadNode.QuadName quadrant : QuadNode.QuadName.values()) {
+            copy.setQuadrant(quadrant, copyOf(node.getQuadrant(quadrant), dimension / 2));
+        }
+        return copy;
+    }
+    
     //helper methods
-    private QuadNode segmentation(int x, int y, int[][] img, int dimension) {
-        QuadNode node = new QuadNodeImpl(dimension);      
-        if (dimension == 2) {
-            int color = colorCheck(x, y, img);
-            //if color is not -1 it means that the node is a leaf
-            if (color != -1) {
-                node.setColor(color);
-            } else {
-                //return node and its children
-                node.setQuadrant(QuadNode.QuadName.TOP_LEFT, 
-                        new QuadNodeImpl(dimension / 2, img[y - 1][x - 1]));
-                node.setQuadrant(QuadNode.QuadName.BOTTOM_LEFT, 
-                        new QuadNodeImpl(dimension / 2, img[y][x - 1]));
-                node.setQuadrant(QuadNode.QuadName.TOP_RIGHT, 
-                        new QuadNodeImpl(dimension / 2, img[y - 1][x]));
-                node.setQuadrant(QuadNode.QuadName.BOTTOM_RIGHT, 
-                        new QuadNodeImpl(dimension / 2, img[y][x]));
+    
+    //counts an edit and marks the rectangle of the cached image as stale
+    private void modified(int minX, int minY, int maxX, int maxY) {
+        modCount++;
+        if (pixels == null) {
+            return;
+        }
+        if (dirtyMinX >= dirtyMaxX) {
+            dirtyMinX = minX;
+            dirtyMinY = minY;
+            dirtyMaxX = maxX;
+            dirtyMaxY = maxY;
+        } else {
+            dirtyMinX = Math.min(dirtyMinX, minX);
+            dirtyMinY = Math.min(dirtyMinY, minY);
+            dirtyMaxX = Math.max(dirtyMaxX, maxX);
+            dirtyMaxY = Math.max(dirtyMaxY, maxY);
+        }
+    }
+    
+    //returns the current image, redrawing only the stale rectangle of a cached one
+    private int[] cachedPixels() {
+        int dimension = getDimension();
+        int[] cached = pixels == null ? null : pixels.get();
+        if (cached == null) {
+            cached = new int[dimension * dimension];
+            populateWindow(root, 0, 0, 0, 0, dimension, dimension, cached);
+            pixels = decompressionCached ? new SoftReference<>(cached) : null;
+        } else if (dirtyMinX < dirtyMaxX) {
+            populateWindow(root, 0, 0, dirtyMinX, dirtyMinY, dirtyMaxX, dirtyMaxY, cached);
+        }
+        dirtyMaxX = dirtyMinX;
+        return cached;
+    }
+    
+    //draws the part of node inside the given rectangle into the row by row image arr
+    private void populateWindow(QuadNode node, int left, int top, int minX, int minY, int maxX, 
+            int maxY, int[] arr) {
+        int dimension = node.getDimension();
+        if (left >= maxX || top >= maxY || left + dimension <= minX || top + dimension <= minY) {
+            return;
+        }
+        int stride = getDimension();
+        int fromX = Math.max(left, minX);
+        int toX = Math.min(left + dimension, maxX);
+        int fromY = Math.max(top, minY);
+        int toY = Math.min(top + dimension, maxY);
+        if (node instanceof DenseBlockNode) {
+            for (int y = fromY; y < toY; y++) {
+                ((DenseBlockNode) node).copyRow(fromX - left, y - top, toX - fromX, arr, 
+                        y * stride + fromX);
+            }
+        } else if (node.isLeaf()) {
+            int color = node.getColor();
+            for (int y = fromY; y < toY; y++) {
+                Arrays.fill(arr, y * stride + fromX, y * stride + toX, color);
             }
-        // if the dimension is not 2 it means that the current node has children that
-        // need to be explored hence we recursively search through the children
         } else {
-            int xCoordinate = dimension / 4;
-            int yCoordinate = dimension / 4;
-            //offsetting centre according to the centrepoint of the nodes
-            QuadNode tlTemp = segmentation(x - xCoordinate, y - yCoordinate, img, dimension / 2);
-            QuadNode trTemp = segmentation(x + xCoordinate, y - yCoordinate, img, dimension / 2);
-            QuadNode brTemp = segmentation(x + xCoordinate, y + yCoordinate, img, dimension / 2);
-            QuadNode blTemp = segmentation(x - xCoordinate, y + yCoordinate, img, dimension / 2);
-            
-            if (tlTemp.isLeaf() && trTemp.isLeaf() && brTemp.isLeaf() && blTemp.isLeaf()) {
-                int tlColor = tlTemp.getColor();
-                int trColor = trTemp.getColor();
-                int blColor = blTemp.getColor();
-                int brColor = brTemp.getColor();
-                if (tlColor == trColor && trColor == brColor && brColor == blColor) {
-                    node.setColor(tlColor);
-                    return node;
-                }
+            int half = dimension / 2;
+            populateWindow(node.getQuadrant(QuadNode.QuadName.TOP_LEFT), left, top, minX, minY, 
+                    maxX, maxY, arr);
+            populateWindow(node.getQuadrant(QuadNode.QuadName.TOP_RIGHT), left + half, top, minX, 
+                    minY, maxX, maxY, arr);
+            populateWindow(node.getQuadrant(QuadNode.QuadName.BOTTOM_LEFT), left, top + half, 
+                    minX, minY, maxX, maxY, arr);
+            populateWindow(node.getQuadrant(QuadNode.QuadName.BOTTOM_RIGHT), left + half, 
+                    top + half, minX, minY, maxX, maxY, arr);
+        }
+    }
+    
+    //merges and refreshes the averages of the ancestors of leaves[from, to), which all lie
+    //inside node, without visiting any other subtree
+    private QuadNode refresh(QuadNode node, int left, int top, 
+            List<QuadTreeSpatialIndex.Leaf> leaves, int from, int to) {
+        if (node instanceof DenseBlockNode) {
+            return settle(node);
+        }
+        if (node.isLeaf()) {
+            return node;
+        }
+        int half = node.getDimension() / 2;
+        //group the leaves by quadrant, top left, top right, bottom left, bottom right
+        int middle = partition(leaves, from, to, false, top + half);
+        int[] bounds = {from, partition(leaves, from, middle, true, left + half), middle, 
+            partition(leaves, middle, to, true, left + half), to};
+        for (int i = 0; i < 4; i++) {
+            if (bounds[i] == bounds[i + 1]) {
+                continue;
+            }
+            boolean right = i % 2 == 1;
+            boolean bottom = i >= 2;
+            QuadNode.QuadName quadrant = quadrantOf(right, bottom);
+            node.setQuadrant(quadrant, refresh(node.getQuadrant(quadrant), 
+                    right ? left + half : left, bottom ? top + half : top, 
+                    leaves, bounds[i], bounds[i + 1]));
+        }
+        mergeChildren(node);
+        updateCounts(node);
+        return settle(node);
+    }
+    
+    //moves the leaves of leaves[from, to) left of (or above) limit to the front and returns
+    //the index of the first leaf that is not
+    private static int partition(List<QuadTreeSpatialIndex.Leaf> leaves, int from, int to, 
+            boolean horizontal, int limit) {
+        int split = from;
+        for (int i = from; i < to; i++) {
+            QuadTreeSpatialIndex.Leaf leaf = leaves.get(i);
+            if ((horizontal ? leaf.getX() : leaf.getY()) < limit) {
+                Collections.swap(leaves, i, split++);
+            }
+        }
+        return split;
+    }
+    
+    private QuadNode replaceNode(QuadNode node, int left, int top, int x, int y, 
+            QuadNode subtree) {
+        int dimension = node.getDimension();
+        if (dimension == subtree.getDimension()) {
+            QuadNode copy = compact(copyOf(subtree, dimension));
+            rebuildCounts(copy);
+            return copy;
+        }
+        if (node instanceof DenseBlockNode) {
+            ((DenseBlockNode) node).paint(x - left, y - top, subtree);
+            return settle(node);
+        }
+        if (node.isLeaf()) {
+            int oldColor = node.getColor();
+            for (QuadNode.QuadName quadrant : QuadNode.QuadName.values()) {
+                node.setQuadrant(quadrant, new QuadNodeImpl(dimension / 2, oldColor));
             }
-            node.setQuadrant(QuadNode.QuadName.TOP_LEFT, tlTemp);
-            node.setQuadrant(QuadNode.QuadName.BOTTOM_LEFT, blTemp);
-            node.setQuadrant(QuadNode.QuadName.TOP_RIGHT, trTemp);
-            node.setQuadrant(QuadNode.QuadName.BOTTOM_RIGHT, brTemp);
         }
+        int half = dimension / 2;
+        boolean right = x >= left + half;
+        boolean bottom = y >= top + half;
+        QuadNode.QuadName quadrant = quadrantOf(right, bottom);
+        QuadNode child = replaceNode(node.getQuadrant(quadrant), right ? left + half : left, 
+                bottom ? top + half : top, x, y, subtree);
+        node.setQuadrant(quadrant, child);
+        mergeChildren(node);
+        updateCounts(node);
+        return settle(node);
+    }
+    
+    //builds the node covering the block with top left corner (x, y), checking the whole block
+    //for uniformity first so that flat regions never allocate the nodes below them
+    private QuadNode segmentation(int x, int y, int[][] img, int dimension) {
+        if (UniformityScanner.isUniform(img, x, y, dimension)) {
+            return new QuadNodeImpl(dimension, img[y][x]);
+        }
+        if (dimension == blockSize) {
+            return settle(DenseBlockNode.of(img, x, y, dimension));
+        }
+        //a non-uniform block cannot have four children of the same color, so no merging is needed
+        QuadNode node = new QuadNodeImpl(dimension);
+        int half = dimension / 2;
+        node.setQuadrant(QuadNode.QuadName.TOP_LEFT, segmentation(x, y, img, half));
+        node.setQuadrant(QuadNode.QuadName.TOP_RIGHT, segmentation(x + half, y, img, half));
+        node.setQuadrant(QuadNode.QuadName.BOTTOM_LEFT, segmentation(x, y + half, img, half));
+        node.setQuadrant(QuadNode.QuadName.BOTTOM_RIGHT, 
+                segmentation(x + half, y + half, img, half));
         return node;
     }
     
-    private int colorCheck(int x, int y, int[][] img) {
+    //sets the pixel below node and returns the (possibly merged) node
+    private QuadNode colorSet(QuadNode node, int left, int top, int x, int y, int color) {
         
-        int col = img[y][x];
-        if (img[y][x - 1] != col || img[y - 1][x - 1] != col || img[y - 1][x] != col) {
-            return -1;
+        int dimension = node.getDimension();
+        if (node instanceof DenseBlockNode) {
+            ((DenseBlockNode) node).set(x - left, y - top, color);
+            return settle(node);
+        }
+        if (node.isLeaf()) {
+            int oldColor = node.getColor();
+            if (oldColor == color) {
+                return node;
+            }
+            if (dimension == 1) {
+                node.setColor(color);
+                return node;
+            }
+            //split the leaf so that only the quadrant containing (x, y) changes
+            node.setQuadrant(QuadNode.QuadName.TOP_LEFT, new QuadNodeImpl(dimension / 2, oldColor));
+            node.setQuadrant(QuadNode.QuadName.TOP_RIGHT, 
+                    new QuadNodeImpl(dimension / 2, oldColor));
+            node.setQuadrant(QuadNode.QuadName.BOTTOM_RIGHT, 
+                    new QuadNodeImpl(dimension / 2, oldColor));
+            node.setQuadrant(QuadNode.QuadName.BOTTOM_LEFT, 
+                    new QuadNodeImpl(dimension / 2, oldColor));
         }
-        return col;
+        int half = dimension / 2;
+        boolean right = x >= left + half;
+        boolean bottom = y >= top + half;
+        QuadNode.QuadName quadrant = quadrantOf(right, bottom);
+        QuadNode child = colorSet(node.getQuadrant(quadrant), right ? left + half : left, 
+                bottom ? top + half : top, x, y, color);
+        //setting the quadrant again also refreshes the node's average color
+        node.setQuadrant(quadrant, child);
+        mergeChildren(node);
+        updateCounts(node);
+        return settle(node);
     }
     
-    private void colorSet(QuadNode parentNode, int parentX, int parentY, int x, int y, int color) {
-        
-        if (parentNode.isLeaf()) {
-            int oldColor = parentNode.getColor();
-            if (oldColor != color) {
-                if (parentNode.getDimension() == 2) {
-                    int dimension = parentNode.getDimension();
-                    QuadNode tl = new QuadNodeImpl(dimension / 2, oldColor);
-                    QuadNode tr = new QuadNodeImpl(dimension / 2, oldColor);
-                    QuadNode br = new QuadNodeImpl(dimension / 2, oldColor);
-                    QuadNode bl = new QuadNodeImpl(dimension / 2, oldColor);
-                    if (x == parentX) {
-                        if (parentY > y) {
-                            tr.setColor(color);
-                        } else if (parentY == y) {
-                            br.setColor(color);
-                        }
-                    } else if (x < parentX) {
-                        if (parentY > y) {
-                            tl.setColor(color);
-                        } else if (parentY == y) {
-                            bl.setColor(color);
-                        }
-                    }
-                    parentNode.setQuadrant(QuadNode.QuadName.TOP_LEFT, tl);
-                    parentNode.setQuadrant(QuadNode.QuadName.TOP_RIGHT, tr);
-                    parentNode.setQuadrant(QuadNode.QuadName.BOTTOM_RIGHT, br);
-                    parentNode.setQuadrant(QuadNode.QuadName.BOTTOM_LEFT, bl);
-                }
-                int dimension = parentNode.getDimension();
-                QuadNode tl = new QuadNodeImpl(dimension / 2, oldColor);
-                QuadNode tr = new QuadNodeImpl(dimension / 2, oldColor);
-                QuadNode br = new QuadNodeImpl(dimension / 2, oldColor);
-                QuadNode bl = new QuadNodeImpl(dimension / 2, oldColor);
-                
-                parentNode.setQuadrant(QuadNode.QuadName.TOP_LEFT, tl);
-                parentNode.setQuadrant(QuadNode.QuadName.TOP_RIGHT, tr);
-                parentNode.setQuadrant(QuadNode.QuadName.BOTTOM_RIGHT, br);
-                parentNode.setQuadrant(QuadNode.QuadName.BOTTOM_LEFT, bl);
-                colorSet(parentNode, parentX, parentY, x, y, color);
+    //fills the part of node inside [minX, maxX) x [minY, maxY) and returns the resulting node
+    private QuadNode rectFill(QuadNode node, int left, int top, int minX, int minY, int maxX, 
+            int maxY, int color) {
+        int dimension = node.getDimension();
+        if (left >= maxX || top >= maxY || left + dimension <= minX || top + dimension <= minY) {
+            return node;
+        }
+        if (left >= minX && top >= minY && left + dimension <= maxX && top + dimension <= maxY) {
+            return new QuadNodeImpl(dimension, color);
+        }
+        if (node instanceof DenseBlockNode) {
+            int fromX = Math.max(left, minX);
+            int fromY = Math.max(top, minY);
+            ((DenseBlockNode) node).fill(fromX - left, fromY - top, 
+                    Math.min(left + dimension, maxX) - fromX, 
+                    Math.min(top + dimension, maxY) - fromY, color);
+            return settle(node);
+        }
+        if (node.isLeaf()) {
+            if (node.getColor() == color) {
+                return node;
+            }
+            int oldColor = node.getColor();
+            for (QuadNode.QuadName quadrant : QuadNode.QuadName.values()) {
+                node.setQuadrant(quadrant, new QuadNodeImpl(dimension / 2, oldColor));
             }
         }
-        int parentDimension = parentNode.getDimension();
-        if (parentDimension == 2) {
-            QuadNode tl = parentNode.getQuadrant(QuadNode.QuadName.TOP_LEFT);
-            QuadNode tr = parentNode.getQuadrant(QuadNode.QuadName.TOP_RIGHT);
-            QuadNode br = parentNode.getQuadrant(QuadNode.QuadName.BOTTOM_RIGHT);
-            QuadNode bl = parentNode.getQuadrant(QuadNode.QuadName.BOTTOM_LEFT);
-            
-            if (parentX == x) {
-                if (parentY > y) {
-                    tr.setColor(color);
-                } else if (parentY == y) {
-                    br.setColor(color);
-                }
-            } else if (parentX > x) {
-                if (parentY > y) {
-                    tl.setColor(color);
-                } else if (parentY == y) {
-                    bl.setColor(color);
-                }
+        int half = dimension / 2;
+        for (QuadNode.QuadName quadrant : QuadNode.QuadName.values()) {
+            boolean right = quadrant == QuadNode.QuadName.TOP_RIGHT 
+                    || quadrant == QuadNode.QuadName.BOTTOM_RIGHT;
+            boolean bottom = quadrant == QuadNode.QuadName.BOTTOM_LEFT 
+                    || quadrant == QuadNode.QuadName.BOTTOM_RIGHT;
+            node.setQuadrant(quadrant, rectFill(node.getQuadrant(quadrant), 
+                    right ? left + half : left, bottom ? top + half : top, 
+                    minX, minY, maxX, maxY, color));
+        }
+        mergeChildren(node);
+        updateCounts(node);
+        return settle(node);
+    }
+    
+    //keeps a block of blockSize in whichever form, nodes or dense pixels, takes less memory
+    private QuadNode settle(QuadNode node) {
+        int dimension = node.getDimension();
+        if (dimension != blockSize) {
+            return node;
+        }
+        boolean compressible = node.isLeaf() 
+                || (long) node.getSize() * NODE_WEIGHT <= (long) dimension * dimension;
+        if (node instanceof DenseBlockNode) {
+            if (!compressible) {
+                return node;
             }
-            
-            int tlColor = tl.getColor();
-            int trColor = tr.getColor();
-            int brColor = br.getColor();
-            int blColor = bl.getColor();
-            if (tlColor == trColor && trColor == brColor && brColor == blColor) {
-                parentNode.setQuadrant(QuadNode.QuadName.TOP_LEFT, null);
-                parentNode.setQuadrant(QuadNode.QuadName.TOP_RIGHT, null);
-                parentNode.setQuadrant(QuadNode.QuadName.BOTTOM_RIGHT, null);
-                parentNode.setQuadrant(QuadNode.QuadName.BOTTOM_LEFT, null);
-                parentNode.setColor(tlColor);
+            QuadNode copy = copyOf(node, dimension);
+            rebuildCounts(copy);
+            return copy;
+        }
+        return compressible ? node : DenseBlockNode.of(node);
+    }
+    
+    //merges equal siblings and settles every block of blockSize below node
+    private QuadNode compact(QuadNode node) {
+        if (node.isLeaf() || node instanceof DenseBlockNode) {
+            return settle(node);
+        }
+        for (QuadNode.QuadName quadrant : QuadNode.QuadName.values()) {
+            node.setQuadrant(quadrant, compact(node.getQuadrant(quadrant)));
+        }
+        mergeChildren(node);
+        updateCounts(node);
+        return settle(node);
+    }
+    
+    //nodes in memory below node, counting a dense block as one node per pixel
+    private static long storageSize(QuadNode node) {
+        if (node instanceof DenseBlockNode) {
+            return (long) node.getDimension() * node.getDimension();
+        }
+        long size = NODE_WEIGHT;
+        if (!node.isLeaf()) {
+            for (QuadNode.QuadName quadrant : QuadNode.QuadName.values()) {
+                size += storageSize(node.getQuadrant(quadrant));
             }
+        }
+        return size;
+    }
+    
+    private static QuadNode.QuadName quadrantOf(boolean right, boolean bottom) {
+        if (bottom) {
+            return right ? QuadNode.QuadName.BOTTOM_RIGHT : QuadNode.QuadName.BOTTOM_LEFT;
+        }
+        return right ? QuadNode.QuadName.TOP_RIGHT : QuadNode.QuadName.TOP_LEFT;
+    }
+    
+    //recomputes the cached color counts of node from its children
+    private void updateCounts(QuadNode node) {
+        if (!(node instanceof QuadNodeImpl)) {
             return;
         }
-        if (x >= parentX) {
-            if (y < parentY) {
-                int childX = parentX + (parentDimension / 4);
-                int childY = parentY - (parentDimension / 4);
-                colorSet(parentNode.getQuadrant(QuadNode.QuadName.TOP_RIGHT), 
-                        childX, childY, x, y, color);
-            } else {
-                int childX = parentX + (parentDimension / 4);
-                int childY = parentY + (parentDimension / 4);
-                colorSet(parentNode.getQuadrant(QuadNode.QuadName.BOTTOM_RIGHT), 
-                        childX, childY, x, y, color);
-            }
-        } else {
-            if (y < parentY) {
-                int childX = parentX - (parentDimension / 4);
-                int childY = parentY - (parentDimension / 4);
-                colorSet(parentNode.getQuadrant(QuadNode.QuadName.TOP_LEFT), 
-                        childX, childY, x, y, color);
-            } else {
-                int childX = parentX - (parentDimension / 4);
-                int childY = parentY + (parentDimension / 4);
-                colorSet(parentNode.getQuadrant(QuadNode.QuadName.BOTTOM_LEFT), 
-                        childX, childY, x, y, color);
+        if (!colorCountsCached || node.isLeaf()) {
+            ((QuadNodeImpl) node).setColorCounts(null);
+            return;
+        }
+        ((QuadNodeImpl) node).setColorCounts(ColorCounts.merge(
+                countsOf(node.getQuadrant(QuadNode.QuadName.TOP_LEFT)), 
+                countsOf(node.getQuadrant(QuadNode.QuadName.TOP_RIGHT)), 
+                countsOf(node.getQuadrant(QuadNode.QuadName.BOTTOM_LEFT)), 
+                countsOf(node.getQuadrant(QuadNode.QuadName.BOTTOM_RIGHT))));
+    }
+    
+    private void rebuildCounts(QuadNode node) {
+        if (!(node instanceof QuadNodeImpl)) {
+            return;
+        }
+        if (!node.isLeaf()) {
+            for (QuadNode.QuadName quadrant : QuadNode.QuadName.values()) {
+                rebuildCounts(node.getQuadrant(quadrant));
             }
         }
-
-        QuadNode tl = parentNode.getQuadrant(QuadNode.QuadName.TOP_LEFT);
-        QuadNode tr = parentNode.getQuadrant(QuadNode.QuadName.TOP_RIGHT);
-        QuadNode br = parentNode.getQuadrant(QuadNode.QuadName.BOTTOM_RIGHT);
-        QuadNode bl = parentNode.getQuadrant(QuadNode.QuadName.BOTTOM_LEFT);
+        updateCounts(node);
+    }
+    
+    //leaves are summarised on the fly, internal nodes normally already hold their counts
+    private ColorCounts countsOf(QuadNode node) {
+        if (node.isLeaf()) {
+            return ColorCounts.of(node.getColor(), (long) node.getDimension() * node.getDimension());
+        }
+        if (node instanceof DenseBlockNode) {
+            return ((DenseBlockNode) node).getColorCounts();
+        }
+        ColorCounts counts = ((QuadNodeImpl) node).getColorCounts();
+        if (counts == null) {
+            rebuildCounts(node);
+            counts = ((QuadNodeImpl) node).getColorCounts();
+        }
+        return counts;
+    }
+    
+    //turns node into a leaf if its four children are leaves of the same color
+    static void mergeChildren(QuadNode node) {
+        QuadNode tl = node.getQuadrant(QuadNode.QuadName.TOP_LEFT);
+        QuadNode tr = node.getQuadrant(QuadNode.QuadName.TOP_RIGHT);
+        QuadNode br = node.getQuadrant(QuadNode.QuadName.BOTTOM_RIGHT);
+        QuadNode bl = node.getQuadrant(QuadNode.QuadName.BOTTOM_LEFT);
         if (tl.isLeaf() && tr.isLeaf() && br.isLeaf() && bl.isLeaf()) {
             int tlColor = tl.getColor();
             int trColor = tr.getColor();
             int brColor = br.getColor();
             int blColor = bl.getColor();
             if (tlColor == trColor && trColor == brColor && brColor == blColor) {
-                parentNode.setQuadrant(QuadNode.QuadName.TOP_LEFT, null);
-                parentNode.setQuadrant(QuadNode.QuadName.TOP_RIGHT, null);
-                parentNode.setQuadrant(QuadNode.QuadName.BOTTOM_RIGHT, null);
-                parentNode.setQuadrant(QuadNode.QuadName.BOTTOM_LEFT, null);
+                node.setQuadrant(QuadNode.QuadName.TOP_LEFT, null);
+                node.setQuadrant(QuadNode.QuadName.TOP_RIGHT, null);
+                node.setQuadrant(QuadNode.QuadName.BOTTOM_RIGHT, null);
+                node.setQuadrant(QuadNode.QuadName.BOTTOM_LEFT, null);
                 
-                parentNode.setColor(tlColor);
+                node.setColor(tlColor);
             }
         }
-
     }
     
-    private int colorGet(QuadNode parent, int parentX, int parentY, int x, int y) {
+    private int colorGet(QuadNode node, int left, int top, int x, int y) {
         
-        if (parent.isLeaf()) { 
-            return parent.getColor();
-        }
-        int parentDimension = parent.getDimension();
-        if (parentX < x) {
-            if (parentY > y) {
-                int childX = parentX + (parentDimension / 4);
-                int childY = parentY - (parentDimension / 4);
-                return colorGet(parent.getQuadrant(QuadNode.QuadName.TOP_RIGHT), 
-                        childX, childY, x, y);
-            } else {
-                int childX = parentX + (parentDimension / 4);
-                int childY = parentY + (parentDimension / 4);
-                return colorGet(parent.getQuadrant(QuadNode.QuadName.BOTTOM_RIGHT), 
-                        childX, childY, x, y);
+        while (!node.isLeaf()) {
+            if (node instanceof DenseBlockNode) {
+                return ((DenseBlockNode) node).get(x - left, y - top);
             }
-            
-        } else {
-            if (parentY > y) {
-                int childX = parentX - (parentDimension / 4);
-                int childY = parentY - (parentDimension / 4);
-                return colorGet(parent.getQuadrant(QuadNode.QuadName.TOP_LEFT), 
-                        childX, childY, x, y);
-            } else {
-                int childX = parentX - (parentDimension / 4);
-                int childY = parentY + (parentDimension / 4);
-                return colorGet(parent.getQuadrant(QuadNode.QuadName.BOTTOM_LEFT), 
-                        childX, childY, x, y);
+            int half = node.getDimension() / 2;
+            boolean right = x >= left + half;
+            boolean bottom = y >= top + half;
+            if (right) {
+                left += half;
             }
+            if (bottom) {
+                top += half;
+            }
+            node = node.getQuadrant(quadrantOf(right, bottom));
         }
+        return node.getColor();
     }
 
     private void populateImg(QuadNode parent, int parentX, int parentY, int[][] arr) {
         
-        if (!parent.isLeaf()) {
+        if (parent instanceof DenseBlockNode) {
+            int half = parent.getDimension() / 2;
+            ((DenseBlockNode) parent).copyTo(arr, parentX - half, parentY - half);
+        } else if (!parent.isLeaf()) {
             int parentDimension = parent.getDimension();
             int center = parentDimension / 4;
             if (parentDimension == 2) {
@@ -315,4 +712,5 @@ public class QuadTreeImpl implements QuadTree {
             }
         }
     }
+
 }
@@ -1,5 +1,7 @@
 import static org.junit.Assert.*;
 
+import java.nio.IntBuffer;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -55,6 +57,89 @@ public class QuadTreeImplTest {
         
     }
 
+    @Test
+    public void testSetColorSplitsAndMerges() {
+        quadTree2.setColor(2, 1, 9);
+        assertEquals(9, quadTree2.getColor(2, 1));
+        assertEquals(2, quadTree2.getColor(3, 1));
+        assertEquals(17, quadTree2.getRoot().getSize());
+        quadTree2.setColor(2, 1, 2);
+        assertEquals(13, quadTree2.getRoot().getSize());
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                assertEquals(img2[y][x], quadTree2.getColor(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testDecompressAtLevel() {
+        int[][] img = new int[4][4];
+        img[0][0] = 0x40;
+        img[3][3] = 0x80;
+        QuadTree tree = new QuadTreeImpl(img);
+        assertArrayEquals(new int[][] {{0x0C}}, tree.decompressAtLevel(0));
+        assertArrayEquals(new int[][] {{0x10, 0}, {0, 0x20}}, tree.decompressAtLevel(1));
+        assertArrayEquals(img, tree.decompressAtLevel(2));
+        assertEquals(0x20, tree.getColor(1, 1, 1));
+        tree.setColor(3, 3, 0);
+        assertEquals(0, tree.getColor(1, 1, 1));
+        assertEquals(0x04, tree.getColor(0, 0, 0));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testDecompressAtLevelTooDeep() {
+        quadTree2.decompressAtLevel(3);
+    }
+
+    @Test
+    public void testFloodFill() {
+        int[][] img = {
+            {1, 1, 1, 1, 2, 2, 2, 2},
+            {1, 1, 1, 1, 2, 2, 2, 2},
+            {1, 1, 2, 2, 2, 1, 2, 2},
+            {1, 1, 2, 1, 2, 2, 2, 2},
+            {2, 2, 2, 2, 1, 1, 1, 1},
+            {2, 2, 2, 2, 1, 1, 1, 1},
+            {2, 2, 2, 2, 1, 1, 1, 1},
+            {2, 2, 2, 2, 1, 1, 1, 1}
+        };
+        QuadTree tree = new QuadTreeImpl(img);
+        tree.floodFill(5, 0, 1);
+        int[][] expected = {
+            {1, 1, 1, 1, 1, 1, 1, 1},
+            {1, 1, 1, 1, 1, 1, 1, 1},
+            {1, 1, 1, 1, 1, 1, 1, 1},
+            {1, 1, 1, 1, 1, 1, 1, 1},
+            {1, 1, 1, 1, 1, 1, 1, 1},
+            {1, 1, 1, 1, 1, 1, 1, 1},
+            {1, 1, 1, 1, 1, 1, 1, 1},
+            {1, 1, 1, 1, 1, 1, 1, 1}
+        };
+        assertArrayEquals(expected, tree.decompress());
+        assertTrue(tree.getRoot().isLeaf());
+        assertEquals(1, tree.getColor(0, 0, 0));
+    }
+
+    @Test
+    public void testFloodFillStopsAtBorder() {
+        int[][] img = {
+            {0, 5, 0, 0},
+            {5, 5, 0, 0},
+            {0, 0, 0, 0},
+            {0, 0, 0, 0}
+        };
+        QuadTree tree = new QuadTreeImpl(img);
+        tree.floodFill(3, 3, 7);
+        int[][] expected = {
+            {0, 5, 7, 7},
+            {5, 5, 7, 7},
+            {7, 7, 7, 7},
+            {7, 7, 7, 7}
+        };
+        assertArrayEquals(expected, tree.decompress());
+    }
+
     @Test
     public void testGetCompressionRatio() {
         assertEquals(0.25, quadTree1.getCompressionRatio(), 6);
@@ -66,4 +151,132 @@ public class QuadTreeImplTest {
         assertNotNull(quadTree2.getRoot());
     }
 
+    @Test
+    public void testFillRect() {
+        quadTree2.fillRect(1, 1, 3, 3, 4);
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                int expected = x >= 1 && y >= 1 ? 4 : img2[y][x];
+                assertEquals(expected, quadTree2.getColor(x, y));
+            }
+        }
+        quadTree2.fillRect(0, 0, 4, 4, 2);
+        assertTrue(quadTree2.getRoot().isLeaf());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testFillRectOutOfBounds() {
+        quadTree2.fillRect(2, 2, 3, 1, 0);
+    }
+
+    @Test
+    public void testDenseBlocks() {
+        int[][] noisy = new int[16][16];
+        for (int y = 0; y < 16; y++) {
+            for (int x = 0; x < 16; x++) {
+                noisy[y][x] = (x * 7 + y * 13) % 11;
+            }
+        }
+        QuadTreeImpl tree = new QuadTreeImpl(noisy, QuadTreeImpl.DENSE_BLOCK_SIZE);
+        assertTrue(tree.getRoot().getQuadrant(QuadNode.QuadName.TOP_LEFT) 
+                instanceof DenseBlockNode);
+        assertArrayEquals(noisy, tree.decompress());
+        QuadTreeImpl nodes = new QuadTreeImpl(noisy, 0);
+        assertEquals(nodes.getRoot().getSize(), tree.getRoot().getSize());
+        assertEquals(nodes.getCompressionRatio(), tree.getCompressionRatio(), 0);
+        //the root node and four blocks of raw pixels
+        assertEquals(1.0 + 8.0 / 256, tree.getStorageRatio(), 1e-9);
+        assertTrue(nodes.getStorageRatio() > 8);
+        //filling the block makes it compressible again
+        tree.fillRect(0, 0, 8, 8, 3);
+        QuadNode topLeft = tree.getRoot().getQuadrant(QuadNode.QuadName.TOP_LEFT);
+        assertTrue(topLeft instanceof QuadNodeImpl);
+        assertTrue(topLeft.isLeaf());
+        //one odd pixel needs 13 nodes, which take more memory than the 64 pixels of the block
+        tree.setColor(1, 1, 4);
+        assertEquals(4, tree.getColor(1, 1));
+        assertTrue(tree.getRoot().getQuadrant(QuadNode.QuadName.TOP_LEFT) 
+                instanceof DenseBlockNode);
+        tree.setColor(1, 1, 3);
+        assertTrue(tree.getRoot().getQuadrant(QuadNode.QuadName.TOP_LEFT).isLeaf());
+    }
+
+    @Test
+    public void testDenseBlockViews() {
+        int[][] img = new int[16][16];
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                //noise everywhere but the bottom right quarter of the block
+                img[y][x] = x >= 4 && y >= 4 ? 9 : (x * 7 + y * 13) % 11;
+            }
+        }
+        QuadTreeImpl tree = new QuadTreeImpl(img, QuadTreeImpl.DENSE_BLOCK_SIZE);
+        QuadNode block = tree.getRoot().getQuadrant(QuadNode.QuadName.TOP_LEFT);
+        assertTrue(block instanceof DenseBlockNode);
+        QuadNode corner = block.getQuadrant(QuadNode.QuadName.BOTTOM_RIGHT);
+        assertTrue(corner.isLeaf());
+        assertEquals(9, corner.getColor());
+        assertFalse(block.getQuadrant(QuadNode.QuadName.TOP_RIGHT).isLeaf());
+        assertTrue(block.getQuadrant(QuadNode.QuadName.TOP_RIGHT)
+                .getQuadrant(QuadNode.QuadName.BOTTOM_RIGHT).getQuadrant(
+                QuadNode.QuadName.TOP_LEFT).isLeaf());
+        //an edit is seen by views taken before and after it
+        tree.setColor(6, 5, 1);
+        assertFalse(corner.isLeaf());
+        assertFalse(tree.getRoot().getQuadrant(QuadNode.QuadName.TOP_LEFT)
+                .getQuadrant(QuadNode.QuadName.BOTTOM_RIGHT).isLeaf());
+        assertEquals(new QuadTreeImpl(tree.decompress(), 0).getRoot().getSize(),
+                tree.getRoot().getSize());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testInvalidBlockSize() {
+        new QuadTreeImpl(img2, 6);
+    }
+
+    @Test
+    public void testDecompressionCache() {
+        int[][] noisy = new int[16][16];
+        for (int y = 0; y < 16; y++) {
+            for (int x = 0; x < 16; x++) {
+                noisy[y][x] = (x * 7 + y * 13) % 11;
+            }
+        }
+        QuadTreeImpl tree = new QuadTreeImpl(noisy, 8);
+        tree.setDecompressionCached(true);
+        int[][] first = tree.decompress();
+        assertArrayEquals(noisy, first);
+        int[][] second = tree.decompress();
+        assertNotSame(first, second);
+        assertArrayEquals(noisy, second);
+        int count = tree.getModCount();
+        tree.setColor(3, 4, 100);
+        tree.fillRect(9, 2, 5, 3, 200);
+        tree.fillRect(0, 12, 4, 4, 300);
+        tree.floodFill(1, 13, 400);
+        assertEquals(count + 4, tree.getModCount());
+        noisy[4][3] = 100;
+        for (int y = 2; y < 5; y++) {
+            for (int x = 9; x < 14; x++) {
+                noisy[y][x] = 200;
+            }
+        }
+        for (int y = 12; y < 16; y++) {
+            for (int x = 0; x < 4; x++) {
+                noisy[y][x] = 400;
+            }
+        }
+        assertArrayEquals(noisy, tree.decompress());
+        IntBuffer view = tree.decompressView();
+        assertEquals(256, view.remaining());
+        assertEquals(200, view.get(2 * 16 + 13));
+        assertTrue(view.isReadOnly());
+        //the view is not a copy, the next read redraws the edited pixel in place
+        tree.setColor(13, 2, 500);
+        tree.decompress();
+        assertEquals(500, view.get(2 * 16 + 13));
+        tree.setDecompressionCached(false);
+        noisy[2][13] = 500;
+        assertArrayEquals(noisy, tree.decompress());
+    }
 }
@@ -0,0 +1,459 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Spatial queries over the leaves of a {@link QuadTree} that never decompress the image.
+ * <p/>
+ * The index keeps no state besides the tree itself: every query descends from
+ * {@link QuadTree#getRoot()}, so results always reflect the current contents of the tree and
+ * locating a single leaf costs one root-to-leaf path. Neighbours are found by descending to the
+ * node of equal size on the other side of an edge and collecting its leaves along that edge.
+ *
+ * @author Darshan
+ */
+public class QuadTreeSpatialIndex implements Iterable<QuadTreeSpatialIndex.Leaf> {
+
+    private final QuadTree tree;
+
+    /**
+     * Creates an index over {@code tree}.
+     *
+     * @param tree the tree to query
+     * @throws IllegalArgumentException if {@code tree} is null
+     */
+    public QuadTreeSpatialIndex(QuadTree tree) {
+        if (tree == null) {
+            throw new IllegalArgumentException();
+        }
+        this.tree = tree;
+    }
+
+    /**
+     * Iterates over all leaves in Morton (Z-) order, i.e. top-left, top-right, bottom-left,
+     * bottom-right at every level.
+     *
+     * @return an iterator over the leaves
+     */
+    @Override
+    public Iterator<Leaf> iterator() {
+        return new MortonIterator(new Leaf(tree.getRoot(), 0, 0));
+    }
+
+    /**
+     * Returns the leaf containing pixel {@code (x, y)}.
+     *
+     * @param x the {@code x}-coordinate
+     * @param y the {@code y}-coordinate
+     * @return the leaf covering the pixel
+     * @throws IllegalArgumentException if {@code x} or {@code y} is out of bounds
+     */
+    public Leaf locate(int x, int y) {
+        checkBounds(x, y);
+        return locate(x, y, 1);
+    }
+
+    /**
+     * Returns the leaves that touch {@code leaf} on the given side. For the four edge directions
+     * these are all leaves sharing part of that edge, for the four diagonal directions it is the
+     * single leaf touching the corner. Leaves on the image border have no neighbours outside it.
+     *
+     * @param leaf a leaf of this tree
+     * @param direction the side to look at
+     * @return the neighbouring leaves, possibly empty
+     * @throws IllegalArgumentException if {@code leaf} or {@code direction} is null
+     */
+    public List<Leaf> neighbours(Leaf leaf, Direction direction) {
+        if (leaf == null || direction == null) {
+            throw new IllegalArgumentException();
+        }
+        List<Leaf> result = new ArrayList<>();
+        int size = leaf.size;
+        int x = direction.dx < 0 ? leaf.x - 1 : direction.dx > 0 ? leaf.x + size : leaf.x;
+        int y = direction.dy < 0 ? leaf.y - 1 : direction.dy > 0 ? leaf.y + size : leaf.y;
+        if (x < 0 || y < 0 || x >= tree.getDimension() || y >= tree.getDimension()) {
+            return result;
+        }
+        if (direction.dx != 0 && direction.dy != 0) {
+            result.add(locate(x, y, 1));
+            return result;
+        }
+        Leaf found = locate(x, y, size);
+        //collect the side of found that faces leaf
+        collectEdge(found, -direction.dx, -direction.dy, result);
+        return result;
+    }
+
+    /**
+     * Returns every leaf that intersects the given rectangle, in Morton order.
+     *
+     * @param x the left edge of the rectangle
+     * @param y the top edge of the rectangle
+     * @param width the width of the rectangle
+     * @param height the height of the rectangle
+     * @return the intersecting leaves, empty if the rectangle lies outside the image
+     * @throws IllegalArgumentException if {@code width} or {@code height} is negative
+     */
+    public List<Leaf> query(int x, int y, int width, int height) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException();
+        }
+        List<Leaf> result = new ArrayList<>();
+        query(new Leaf(tree.getRoot(), 0, 0), x, y, (long) x + width, (long) y + height, result);
+        return result;
+    }
+
+    /**
+     * Returns the leaf of {@code color} closest to pixel {@code (x, y)}, measured as the euclidean
+     * distance from the pixel to the nearest pixel of the leaf. Subtrees are visited closest first,
+     * so the search stops as soon as the answer is known.
+     *
+     * @param x the {@code x}-coordinate
+     * @param y the {@code y}-coordinate
+     * @param color the color to look for
+     * @return the nearest leaf of that color, or {@code null} if the image does not contain it
+     * @throws IllegalArgumentException if {@code x} or {@code y} is out of bounds
+     */
+    public Leaf nearest(int x, int y, int color) {
+        checkBounds(x, y);
+        PriorityQueue<Candidate> queue = new PriorityQueue<>();
+        queue.add(new Candidate(new Leaf(tree.getRoot(), 0, 0), x, y));
+        while (!queue.isEmpty()) {
+            Leaf candidate = queue.poll().leaf;
+            if (candidate.isLeaf()) {
+                if (candidate.getColor() == color) {
+                    return candidate;
+                }
+            } else {
+                for (Leaf child : candidate.children()) {
+                    queue.add(new Candidate(child, x, y));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Labels the 4-connected regions of equal color. Adjacent leaves of the same color are joined
+     * with a union-find over the leaves, so the cost depends on the number of leaves and their
+     * shared edges rather than the number of pixels.
+     *
+     * @return the labelling of all leaves
+     */
+    public Components labelComponents() {
+        List<Leaf> leaves = new ArrayList<>();
+        Map<Long, Integer> ordinals = new HashMap<>();
+        for (Leaf leaf : this) {
+            ordinals.put(leaf.key(), leaves.size());
+            leaves.add(leaf);
+        }
+        int[] parents = new int[leaves.size()];
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = i;
+        }
+        //joining every leaf with its east and south neighbours covers every shared edge once
+        for (int i = 0; i < leaves.size(); i++) {
+            Leaf leaf = leaves.get(i);
+            for (Direction direction : new Direction[] {Direction.EAST, Direction.SOUTH}) {
+                for (Leaf neighbour : neighbours(leaf, direction)) {
+                    if (neighbour.getColor() == leaf.getColor()) {
+                        union(parents, i, ordinals.get(neighbour.key()));
+                    }
+                }
+            }
+        }
+        return new Components(leaves, ordinals, parents);
+    }
+
+    //helper methods
+    private void checkBounds(int x, int y) {
+        if (x < 0 || x >= tree.getDimension() || y < 0 || y >= tree.getDimension()) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    //finds the node of at least the given size that contains (x, y)
+    private Leaf locate(int x, int y, int size) {
+        Leaf leaf = new Leaf(tree.getRoot(), 0, 0);
+        while (!leaf.isLeaf() && leaf.size > size) {
+            int half = leaf.size / 2;
+            boolean right = x >= leaf.x + half;
+            boolean bottom = y >= leaf.y + half;
+            leaf = leaf.child(right, bottom);
+        }
+        return leaf;
+    }
+
+    //collects the leaves of found along the side given by (dx, dy)
+    private static void collectEdge(Leaf found, int dx, int dy, List<Leaf> out) {
+        if (found.isLeaf()) {
+            out.add(found);
+            return;
+        }
+        for (Leaf child : found.children()) {
+            boolean right = child.x > found.x;
+            boolean bottom = child.y > found.y;
+            if ((dx > 0 && !right) || (dx < 0 && right) || (dy > 0 && !bottom)
+                    || (dy < 0 && bottom)) {
+                continue;
+            }
+            collectEdge(child, dx, dy, out);
+        }
+    }
+
+    private static void query(Leaf leaf, long left, long top, long right, long bottom,
+            List<Leaf> out) {
+        if (leaf.x >= right || leaf.y >= bottom || leaf.x + leaf.size <= left
+                || leaf.y + leaf.size <= top) {
+            return;
+        }
+        if (leaf.isLeaf()) {
+            out.add(leaf);
+            return;
+        }
+        for (Leaf child : leaf.children()) {
+            query(child, left, top, right, bottom, out);
+        }
+    }
+
+    private static int find(int[] parents, int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parents, int a, int b) {
+        int rootA = find(parents, a);
+        int rootB = find(parents, b);
+        if (rootA != rootB) {
+            parents[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+
+    /**
+     * The eight directions around a leaf.
+     */
+    public enum Direction {
+        NORTH(0, -1), NORTH_EAST(1, -1), EAST(1, 0), SOUTH_EAST(1, 1), SOUTH(0, 1),
+        SOUTH_WEST(-1, 1), WEST(-1, 0), NORTH_WEST(-1, -1);
+
+        private final int dx;
+        private final int dy;
+
+        Direction(int dx, int dy) {
+            this.dx = dx;
+            this.dy = dy;
+        }
+    }
+
+    /**
+     * A node of the tree together with the position of its top-left pixel. Leaves are equal if
+     * they cover the same square.
+     */
+    public static class Leaf {
+
+        private final QuadNode node;
+        private final int x;
+        private final int y;
+        private final int size;
+
+        Leaf(QuadNode node, int x, int y) {
+            this.node = node;
+            this.x = x;
+            this.y = y;
+            this.size = node.getDimension();
+        }
+
+        public QuadNode getNode() {
+            return node;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getColor() {
+            return node.getColor();
+        }
+
+        boolean isLeaf() {
+            return node.isLeaf();
+        }
+
+        Leaf child(boolean right, boolean bottom) {
+            int half = size / 2;
+            QuadNode.QuadName quadrant;
+            if (bottom) {
+                quadrant = right ? QuadNode.QuadName.BOTTOM_RIGHT : QuadNode.QuadName.BOTTOM_LEFT;
+            } else {
+                quadrant = right ? QuadNode.QuadName.TOP_RIGHT : QuadNode.QuadName.TOP_LEFT;
+            }
+            return new Leaf(node.getQuadrant(quadrant), right ? x + half : x,
+                    bottom ? y + half : y);
+        }
+
+        //children in Morton order
+        Leaf[] children() {
+            return new Leaf[] {child(false, false), child(true, false), child(false, true),
+                child(true, true)};
+        }
+
+        long key() {
+            return ((long) x << 32) | (y & 0xFFFFFFFFL);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Leaf)) {
+                return false;
+            }
+            Leaf leaf = (Leaf) other;
+            return x == leaf.x && y == leaf.y && size == leaf.size;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(key()) * 31 + size;
+        }
+
+        @Override
+        public String toString() {
+            return "Leaf(" + x + ", " + y + ", " + size + ")";
+        }
+    }
+
+    /**
+     * Result of {@link #labelComponents()}. Labels run from {@code 0} to {@code getCount() - 1}
+     * in the Morton order of each component's first leaf.
+     */
+    public class Components {
+
+        private final List<Leaf> leaves;
+        private final Map<Long, Integer> ordinals;
+        private final int[] labels;
+        private final long[] areas;
+        private final int[] colors;
+
+        Components(List<Leaf> leaves, Map<Long, Integer> ordinals, int[] parents) {
+            this.leaves = leaves;
+            this.ordinals = ordinals;
+            this.labels = new int[leaves.size()];
+            int count = 0;
+            for (int i = 0; i < parents.length; i++) {
+                int root = find(parents, i);
+                labels[i] = root == i ? count++ : labels[root];
+            }
+            areas = new long[count];
+            colors = new int[count];
+            for (int i = 0; i < labels.length; i++) {
+                Leaf leaf = leaves.get(i);
+                areas[labels[i]] += (long) leaf.size * leaf.size;
+                colors[labels[i]] = leaf.getColor();
+            }
+        }
+
+        public int getCount() {
+            return areas.length;
+        }
+
+        /**
+         * Returns the label of the component containing pixel {@code (x, y)}.
+         *
+         * @throws IllegalArgumentException if {@code x} or {@code y} is out of bounds
+         */
+        public int getLabel(int x, int y) {
+            return labels[ordinals.get(locate(x, y).key())];
+        }
+
+        public long getArea(int label) {
+            return areas[label];
+        }
+
+        public int getColor(int label) {
+            return colors[label];
+        }
+
+        /**
+         * Returns the leaves making up the component, in Morton order.
+         */
+        public List<Leaf> getLeaves(int label) {
+            List<Leaf> result = new ArrayList<>();
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i] == label) {
+                    result.add(leaves.get(i));
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Entry of the best-first search in {@link #nearest}, ordered by distance.
+     */
+    private static class Candidate implements Comparable<Candidate> {
+
+        private final Leaf leaf;
+        private final long distance;
+
+        Candidate(Leaf leaf, int x, int y) {
+            this.leaf = leaf;
+            long dx = Math.max(0, Math.max(leaf.x - x, x - (leaf.x + leaf.size - 1)));
+            long dy = Math.max(0, Math.max(leaf.y - y, y - (leaf.y + leaf.size - 1)));
+            this.distance = dx * dx + dy * dy;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            return Long.compare(distance, other.distance);
+        }
+    }
+
+    /**
+     * Depth-first walk with an explicit stack so deep trees do not recurse.
+     */
+    private static class MortonIterator implements Iterator<Leaf> {
+
+        private final Deque<Leaf> stack = new ArrayDeque<>();
+
+        MortonIterator(Leaf root) {
+            stack.push(root);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public Leaf next() {
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Leaf leaf = stack.pop();
+            while (!leaf.isLeaf()) {
+                Leaf[] children = leaf.children();
+                for (int i = children.length - 1; i > 0; i--) {
+                    stack.push(children[i]);
+                }
+                leaf = children[0];
+            }
+            return leaf;
+        }
+    }
+}
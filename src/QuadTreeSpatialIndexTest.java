@@ -0,0 +1,82 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class QuadTreeSpatialIndexTest {
+
+    QuadTreeSpatialIndex index;
+    int[][] img;
+    @Before
+    public void setUp() {
+        img = new int[][] {
+            {1, 1, 2, 2},
+            {1, 1, 2, 2},
+            {2, 3, 2, 3},
+            {3, 3, 1, 1}
+        };
+        index = new QuadTreeSpatialIndex(new QuadTreeImpl(img));
+    }
+
+    @Test
+    public void testMortonOrder() {
+        List<String> leaves = new ArrayList<>();
+        for (QuadTreeSpatialIndex.Leaf leaf : index) {
+            leaves.add(leaf.getX() + "," + leaf.getY() + "," + leaf.getSize());
+        }
+        assertEquals(10, leaves.size());
+        assertEquals("0,0,2", leaves.get(0));
+        assertEquals("2,0,2", leaves.get(1));
+        assertEquals("0,2,1", leaves.get(2));
+        assertEquals("1,2,1", leaves.get(3));
+        assertEquals("3,3,1", leaves.get(9));
+    }
+
+    @Test
+    public void testNeighbours() {
+        QuadTreeSpatialIndex.Leaf big = index.locate(1, 1);
+        assertEquals(2, big.getSize());
+        List<QuadTreeSpatialIndex.Leaf> south =
+                index.neighbours(big, QuadTreeSpatialIndex.Direction.SOUTH);
+        assertEquals(2, south.size());
+        assertEquals(2, south.get(0).getColor());
+        assertEquals(3, south.get(1).getColor());
+        assertEquals(1, index.neighbours(big, QuadTreeSpatialIndex.Direction.EAST).size());
+        assertTrue(index.neighbours(big, QuadTreeSpatialIndex.Direction.WEST).isEmpty());
+        List<QuadTreeSpatialIndex.Leaf> corner =
+                index.neighbours(big, QuadTreeSpatialIndex.Direction.SOUTH_EAST);
+        assertEquals(index.locate(2, 2), corner.get(0));
+        QuadTreeSpatialIndex.Leaf small = index.locate(1, 2);
+        assertEquals(big, index.neighbours(small, QuadTreeSpatialIndex.Direction.NORTH).get(0));
+    }
+
+    @Test
+    public void testQuery() {
+        assertEquals(4, index.query(1, 1, 2, 2).size());
+        assertEquals(10, index.query(-5, -5, 100, 100).size());
+        assertTrue(index.query(4, 0, 3, 3).isEmpty());
+    }
+
+    @Test
+    public void testNearest() {
+        QuadTreeSpatialIndex.Leaf leaf = index.nearest(0, 0, 3);
+        assertEquals(1, leaf.getX());
+        assertEquals(2, leaf.getY());
+        assertNull(index.nearest(0, 0, 42));
+    }
+
+    @Test
+    public void testLabelComponents() {
+        QuadTreeSpatialIndex.Components components = index.labelComponents();
+        assertEquals(6, components.getCount());
+        int twos = components.getLabel(2, 0);
+        assertEquals(twos, components.getLabel(2, 2));
+        assertEquals(5, components.getArea(twos));
+        assertEquals(2, components.getColor(twos));
+        assertEquals(components.getLabel(1, 2), components.getLabel(0, 3));
+        assertNotEquals(components.getLabel(0, 2), components.getLabel(2, 2));
+    }
+}
@@ -0,0 +1,173 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Color statistics over rectangular regions of a {@link QuadTree}, computed from the nodes.
+ * <p/>
+ * A leaf inside the region contributes its whole area ({@code getDimension()^2}) in one step and
+ * a leaf on its border contributes the overlap. A fully covered internal node is answered from its
+ * cached {@link ColorCounts} in constant time when the tree is a {@link QuadTreeImpl} with
+ * {@link QuadTreeImpl#setColorCountsCached(boolean) color counts cached} and the summary is exact;
+ * otherwise its children are visited. A dense block of a {@link QuadTreeImpl} with few colors is
+ * answered from the counts it keeps of its pixels. No query ever decompresses the image.
+ *
+ * @author Darshan
+ */
+public final class QuadTreeStatistics {
+
+    private QuadTreeStatistics() {
+    }
+
+    /**
+     * Counts the pixels of every color inside the given rectangle. Parts of the rectangle outside
+     * the image are ignored.
+     *
+     * @param tree the image
+     * @param x the left edge of the rectangle
+     * @param y the top edge of the rectangle
+     * @param width the width of the rectangle
+     * @param height the height of the rectangle
+     * @return a map from color to number of pixels
+     * @throws IllegalArgumentException if {@code tree} is null or {@code width} or {@code height}
+     * is negative
+     */
+    public static Map<Integer, Long> histogram(QuadTree tree, int x, int y, int width,
+            int height) {
+        checkArguments(tree, width, height);
+        Map<Integer, Long> result = new HashMap<>();
+        histogram(tree.getRoot(), 0, 0, x, y, (long) x + width, (long) y + height, result);
+        return result;
+    }
+
+    /**
+     * Counts the pixels of {@code color} inside the given rectangle.
+     *
+     * @param tree the image
+     * @param color the color to count
+     * @param x the left edge of the rectangle
+     * @param y the top edge of the rectangle
+     * @param width the width of the rectangle
+     * @param height the height of the rectangle
+     * @return the number of pixels of {@code color}
+     * @throws IllegalArgumentException if {@code tree} is null or {@code width} or {@code height}
+     * is negative
+     */
+    public static long areaOfColor(QuadTree tree, int color, int x, int y, int width,
+            int height) {
+        checkArguments(tree, width, height);
+        return areaOfColor(tree.getRoot(), color, 0, 0, x, y, (long) x + width,
+                (long) y + height);
+    }
+
+    /**
+     * Returns the most common color inside the given rectangle. Ties are broken towards the
+     * smaller color value.
+     *
+     * @param tree the image
+     * @param x the left edge of the rectangle
+     * @param y the top edge of the rectangle
+     * @param width the width of the rectangle
+     * @param height the height of the rectangle
+     * @return the dominant color
+     * @throws IllegalArgumentException if {@code tree} is null, {@code width} or {@code height}
+     * is negative or the rectangle does not overlap the image
+     */
+    public static int dominantColor(QuadTree tree, int x, int y, int width, int height) {
+        Map<Integer, Long> histogram = histogram(tree, x, y, width, height);
+        if (histogram.isEmpty()) {
+            throw new IllegalArgumentException();
+        }
+        int best = 0;
+        long bestCount = -1;
+        for (Map.Entry<Integer, Long> entry : histogram.entrySet()) {
+            long count = entry.getValue();
+            if (count > bestCount || (count == bestCount && entry.getKey() < best)) {
+                best = entry.getKey();
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    //helper methods
+    private static void checkArguments(QuadTree tree, int width, int height) {
+        if (tree == null || width < 0 || height < 0) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    private static long overlap(int left, int top, int size, long minX, long minY, long maxX,
+            long maxY) {
+        long width = Math.min(left + size, maxX) - Math.max(left, minX);
+        long height = Math.min(top + size, maxY) - Math.max(top, minY);
+        if (width <= 0 || height <= 0) {
+            return 0;
+        }
+        return width * height;
+    }
+
+    //exact cached counts of an internal node, or null if they cannot be used
+    private static ColorCounts cachedCounts(QuadNode node) {
+        ColorCounts counts = null;
+        if (node instanceof QuadNodeImpl) {
+            counts = ((QuadNodeImpl) node).getColorCounts();
+        } else if (node instanceof DenseBlockNode) {
+            counts = ((DenseBlockNode) node).getColorCounts();
+        }
+        return counts != null && counts.isExact() ? counts : null;
+    }
+
+    private static void histogram(QuadNode node, int left, int top, long minX, long minY,
+            long maxX, long maxY, Map<Integer, Long> out) {
+        int size = node.getDimension();
+        long area = overlap(left, top, size, minX, minY, maxX, maxY);
+        if (area == 0) {
+            return;
+        }
+        if (node.isLeaf()) {
+            out.merge(node.getColor(), area, Long::sum);
+            return;
+        }
+        ColorCounts counts = cachedCounts(node);
+        if (counts != null && area == (long) size * size) {
+            for (int i = 0; i < counts.size(); i++) {
+                out.merge(counts.getColor(i), counts.getCount(i), Long::sum);
+            }
+            return;
+        }
+        int half = size / 2;
+        histogram(node.getQuadrant(QuadNode.QuadName.TOP_LEFT), left, top, minX, minY, maxX, maxY,
+                out);
+        histogram(node.getQuadrant(QuadNode.QuadName.TOP_RIGHT), left + half, top, minX, minY,
+                maxX, maxY, out);
+        histogram(node.getQuadrant(QuadNode.QuadName.BOTTOM_LEFT), left, top + half, minX, minY,
+                maxX, maxY, out);
+        histogram(node.getQuadrant(QuadNode.QuadName.BOTTOM_RIGHT), left + half, top + half, minX,
+                minY, maxX, maxY, out);
+    }
+
+    private static long areaOfColor(QuadNode node, int color, int left, int top, long minX,
+            long minY, long maxX, long maxY) {
+        int size = node.getDimension();
+        long area = overlap(left, top, size, minX, minY, maxX, maxY);
+        if (area == 0) {
+            return 0;
+        }
+        if (node.isLeaf()) {
+            return node.getColor() == color ? area : 0;
+        }
+        ColorCounts counts = cachedCounts(node);
+        if (counts != null && area == (long) size * size) {
+            return counts.countOf(color);
+        }
+        int half = size / 2;
+        return areaOfColor(node.getQuadrant(QuadNode.QuadName.TOP_LEFT), color, left, top,
+                minX, minY, maxX, maxY)
+                + areaOfColor(node.getQuadrant(QuadNode.QuadName.TOP_RIGHT), color, left + half,
+                top, minX, minY, maxX, maxY)
+                + areaOfColor(node.getQuadrant(QuadNode.QuadName.BOTTOM_LEFT), color, left,
+                top + half, minX, minY, maxX, maxY)
+                + areaOfColor(node.getQuadrant(QuadNode.QuadName.BOTTOM_RIGHT), color,
+                left + half, top + half, minX, minY, maxX, maxY);
+    }
+}
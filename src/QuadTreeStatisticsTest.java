@@ -0,0 +1,93 @@
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class QuadTreeStatisticsTest {
+
+    QuadTreeImpl tree;
+    int[][] img;
+    @Before
+    public void setUp() {
+        img = new int[][] {
+            {1, 1, 2, 2},
+            {1, 1, 2, 2},
+            {2, 3, 2, 3},
+            {3, 3, 1, 1}
+        };
+        tree = new QuadTreeImpl(img);
+    }
+
+    @Test
+    public void testHistogram() {
+        Map<Integer, Long> histogram = QuadTreeStatistics.histogram(tree, 0, 0, 4, 4);
+        assertEquals(Long.valueOf(6), histogram.get(1));
+        assertEquals(Long.valueOf(6), histogram.get(2));
+        assertEquals(Long.valueOf(4), histogram.get(3));
+        Map<Integer, Long> part = QuadTreeStatistics.histogram(tree, 1, 1, 2, 2);
+        assertEquals(Long.valueOf(1), part.get(1));
+        assertEquals(Long.valueOf(2), part.get(2));
+        assertEquals(Long.valueOf(1), part.get(3));
+    }
+
+    @Test
+    public void testAreaOfColorWithCache() {
+        tree.setColorCountsCached(true);
+        assertEquals(6, QuadTreeStatistics.areaOfColor(tree, 1, 0, 0, 4, 4));
+        tree.setColor(0, 0, 3);
+        tree.setColor(3, 3, 3);
+        assertEquals(4, QuadTreeStatistics.areaOfColor(tree, 1, 0, 0, 4, 4));
+        assertEquals(6, QuadTreeStatistics.areaOfColor(tree, 3, -2, -2, 10, 10));
+        tree.floodFill(2, 0, 1);
+        assertEquals(9, QuadTreeStatistics.areaOfColor(tree, 1, 0, 0, 4, 4));
+        ColorCounts counts = ((QuadNodeImpl) tree.getRoot()).getColorCounts();
+        assertTrue(counts.isExact());
+        assertEquals(9, counts.countOf(1));
+    }
+
+    @Test
+    public void testDominantColor() {
+        assertEquals(1, QuadTreeStatistics.dominantColor(tree, 0, 0, 4, 4));
+        assertEquals(3, QuadTreeStatistics.dominantColor(tree, 0, 3, 2, 1));
+    }
+
+    @Test
+    public void testColorCountsOverflow() {
+        int[][] noisy = new int[8][8];
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                noisy[y][x] = y * 8 + x;
+            }
+        }
+        QuadTreeImpl big = new QuadTreeImpl(noisy);
+        big.setColorCountsCached(true);
+        assertFalse(((QuadNodeImpl) big.getRoot()).getColorCounts().isExact());
+        assertEquals(64, QuadTreeStatistics.histogram(big, 0, 0, 8, 8).size());
+        assertEquals(1, QuadTreeStatistics.areaOfColor(big, 63, 0, 0, 8, 8));
+    }
+
+    @Test
+    public void testDenseBlockCounts() {
+        int[][] checkered = new int[16][16];
+        for (int y = 0; y < 16; y++) {
+            for (int x = 0; x < 16; x++) {
+                checkered[y][x] = x < 8 ? (x + y) % 2 : y * 16 + x;
+            }
+        }
+        QuadTreeImpl dense = new QuadTreeImpl(checkered, QuadTreeImpl.DENSE_BLOCK_SIZE);
+        dense.setColorCountsCached(true);
+        DenseBlockNode block = (DenseBlockNode) dense.getRoot().getQuadrant(
+                QuadNode.QuadName.TOP_LEFT);
+        assertTrue(block.getColorCounts().isExact());
+        assertEquals(32, block.getColorCounts().countOf(1));
+        assertFalse(((DenseBlockNode) dense.getRoot().getQuadrant(QuadNode.QuadName.TOP_RIGHT))
+                .getColorCounts().isExact());
+        assertEquals(QuadTreeStatistics.histogram(new QuadTreeImpl(checkered), 0, 0, 16, 16),
+                QuadTreeStatistics.histogram(dense, 0, 0, 16, 16));
+        //edits drop the cached counts
+        dense.setColor(0, 0, 1);
+        assertEquals(33, QuadTreeStatistics.areaOfColor(dense, 1, 0, 0, 8, 8));
+    }
+}
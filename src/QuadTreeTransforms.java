@@ -0,0 +1,152 @@
+/**
+ * Geometric transforms of {@link QuadTree}s computed on the nodes instead of the pixels.
+ * <p/>
+ * Rotations and flips only reorder the children of every node and downsampling drops the bottom
+ * level, so each of them costs one pass over the nodes of the input and never touches individual
+ * pixels. The inputs are left unchanged.
+ *
+ * @author Darshan
+ */
+public final class QuadTreeTransforms {
+
+    private static final QuadNode.QuadName TL = QuadNode.QuadName.TOP_LEFT;
+    private static final QuadNode.QuadName TR = QuadNode.QuadName.TOP_RIGHT;
+    private static final QuadNode.QuadName BL = QuadNode.QuadName.BOTTOM_LEFT;
+    private static final QuadNode.QuadName BR = QuadNode.QuadName.BOTTOM_RIGHT;
+
+    //for each quadrant of the result (in QuadName order), the quadrant of the input it comes from
+    private static final QuadNode.QuadName[] ROTATE_90 = {BL, TL, BR, TR};
+    private static final QuadNode.QuadName[] ROTATE_180 = {BR, BL, TR, TL};
+    private static final QuadNode.QuadName[] ROTATE_270 = {TR, BR, TL, BL};
+    private static final QuadNode.QuadName[] FLIP_HORIZONTAL = {TR, TL, BR, BL};
+    private static final QuadNode.QuadName[] FLIP_VERTICAL = {BL, BR, TL, TR};
+
+    private QuadTreeTransforms() {
+    }
+
+    /**
+     * Rotates the image 90 degrees clockwise.
+     *
+     * @param tree the image to rotate
+     * @return a new rotated {@link QuadTree}
+     * @throws IllegalArgumentException if {@code tree} is null
+     */
+    public static QuadTree rotate90(QuadTree tree) {
+        return permute(tree, ROTATE_90);
+    }
+
+    /**
+     * Rotates the image 180 degrees.
+     *
+     * @param tree the image to rotate
+     * @return a new rotated {@link QuadTree}
+     * @throws IllegalArgumentException if {@code tree} is null
+     */
+    public static QuadTree rotate180(QuadTree tree) {
+        return permute(tree, ROTATE_180);
+    }
+
+    /**
+     * Rotates the image 270 degrees clockwise, i.e. 90 degrees counter-clockwise.
+     *
+     * @param tree the image to rotate
+     * @return a new rotated {@link QuadTree}
+     * @throws IllegalArgumentException if {@code tree} is null
+     */
+    public static QuadTree rotate270(QuadTree tree) {
+        return permute(tree, ROTATE_270);
+    }
+
+    /**
+     * Mirrors the image left to right.
+     *
+     * @param tree the image to flip
+     * @return a new flipped {@link QuadTree}
+     * @throws IllegalArgumentException if {@code tree} is null
+     */
+    public static QuadTree flipHorizontal(QuadTree tree) {
+        return permute(tree, FLIP_HORIZONTAL);
+    }
+
+    /**
+     * Mirrors the image top to bottom.
+     *
+     * @param tree the image to flip
+     * @return a new flipped {@link QuadTree}
+     * @throws IllegalArgumentException if {@code tree} is null
+     */
+    public static QuadTree flipVertical(QuadTree tree) {
+        return permute(tree, FLIP_VERTICAL);
+    }
+
+    /**
+     * Crops the image to one of its quadrants. The nodes of the quadrant are copied, so the
+     * result and {@code tree} can be edited independently.
+     *
+     * @param tree the image to crop
+     * @param quadrant the quadrant to keep
+     * @return a {@link QuadTree} of half the dimension holding the quadrant
+     * @throws IllegalArgumentException if {@code tree} or {@code quadrant} is null, or the tree
+     * has a dimension of {@code 1}
+     */
+    public static QuadTree subTree(QuadTree tree, QuadNode.QuadName quadrant) {
+        if (tree == null || quadrant == null || tree.getDimension() == 1) {
+            throw new IllegalArgumentException();
+        }
+        QuadNode root = tree.getRoot();
+        int dimension = tree.getDimension() / 2;
+        if (root.isLeaf()) {
+            return new QuadTreeImpl(new QuadNodeImpl(dimension, root.getColor()));
+        }
+        return new QuadTreeImpl(QuadTreeImpl.copyOf(root.getQuadrant(quadrant), dimension));
+    }
+
+    /**
+     * Halves the dimension of the image. Each pixel of the result is the average color of the
+     * corresponding 2x2 block, which for internal nodes is read from their cached
+     * {@link QuadNode#getAverageColor() average}.
+     *
+     * @param tree the image to shrink
+     * @return a new {@link QuadTree} of half the dimension
+     * @throws IllegalArgumentException if {@code tree} is null or has a dimension of {@code 1}
+     */
+    public static QuadTree downsample2x(QuadTree tree) {
+        if (tree == null || tree.getDimension() == 1) {
+            throw new IllegalArgumentException();
+        }
+        return new QuadTreeImpl(downsample(tree.getRoot(), tree.getDimension() / 2));
+    }
+
+    //helper methods
+    private static QuadTree permute(QuadTree tree, QuadNode.QuadName[] sources) {
+        if (tree == null) {
+            throw new IllegalArgumentException();
+        }
+        return new QuadTreeImpl(permute(tree.getRoot(), sources));
+    }
+
+    private static QuadNode permute(QuadNode node, QuadNode.QuadName[] sources) {
+        if (node.isLeaf()) {
+            return new QuadNodeImpl(node.getDimension(), node.getColor());
+        }
+        QuadNode result = new QuadNodeImpl(node.getDimension());
+        for (QuadNode.QuadName quadrant : QuadNode.QuadName.values()) {
+            result.setQuadrant(quadrant,
+                    permute(node.getQuadrant(sources[quadrant.ordinal()]), sources));
+        }
+        return result;
+    }
+
+    private static QuadNode downsample(QuadNode node, int dimension) {
+        if (node.isLeaf() || dimension == 1) {
+            return new QuadNodeImpl(dimension, node.getAverageColor());
+        }
+        QuadNode result = new QuadNodeImpl(dimension);
+        for (QuadNode.QuadName quadrant : QuadNode.QuadName.values()) {
+            result.setQuadrant(quadrant, downsample(node.getQuadrant(quadrant), dimension / 2));
+        }
+        //averaging can make neighbouring blocks equal
+        QuadTreeImpl.mergeChildren(result);
+        return result;
+    }
+}
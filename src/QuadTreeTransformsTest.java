@@ -0,0 +1,92 @@
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class QuadTreeTransformsTest {
+
+    QuadTree tree;
+    int[][] img;
+    @Before
+    public void setUp() {
+        img = new int[][] {
+            {1, 1, 2, 2},
+            {1, 1, 2, 2},
+            {2, 3, 2, 3},
+            {3, 3, 1, 1}
+        };
+        tree = new QuadTreeImpl(img);
+    }
+
+    @Test
+    public void testRotate90() {
+        int[][] expected = {
+            {3, 2, 1, 1},
+            {3, 3, 1, 1},
+            {1, 2, 2, 2},
+            {1, 3, 2, 2}
+        };
+        assertArrayEquals(expected, QuadTreeTransforms.rotate90(tree).decompress());
+        assertArrayEquals(img, tree.decompress());
+    }
+
+    @Test
+    public void testRotationsCompose() {
+        QuadTree twice = QuadTreeTransforms.rotate90(QuadTreeTransforms.rotate90(tree));
+        assertArrayEquals(QuadTreeTransforms.rotate180(tree).decompress(), twice.decompress());
+        QuadTree full = QuadTreeTransforms.rotate270(QuadTreeTransforms.rotate90(tree));
+        assertArrayEquals(img, full.decompress());
+    }
+
+    @Test
+    public void testFlips() {
+        int[][] horizontal = {
+            {2, 2, 1, 1},
+            {2, 2, 1, 1},
+            {3, 2, 3, 2},
+            {1, 1, 3, 3}
+        };
+        int[][] vertical = {
+            {3, 3, 1, 1},
+            {2, 3, 2, 3},
+            {1, 1, 2, 2},
+            {1, 1, 2, 2}
+        };
+        assertArrayEquals(horizontal, QuadTreeTransforms.flipHorizontal(tree).decompress());
+        assertArrayEquals(vertical, QuadTreeTransforms.flipVertical(tree).decompress());
+    }
+
+    @Test
+    public void testSubTree() {
+        QuadTree crop = QuadTreeTransforms.subTree(tree, QuadNode.QuadName.BOTTOM_LEFT);
+        assertArrayEquals(new int[][] {{2, 3}, {3, 3}}, crop.decompress());
+        QuadTree flat = QuadTreeTransforms.subTree(crop, QuadNode.QuadName.TOP_RIGHT);
+        assertEquals(1, flat.getDimension());
+        assertEquals(3, flat.getColor(0, 0));
+    }
+
+    @Test
+    public void testSubTreeIsIndependent() {
+        QuadTree crop = QuadTreeTransforms.subTree(tree, QuadNode.QuadName.BOTTOM_LEFT);
+        crop.fillRect(0, 0, 2, 2, 5);
+        crop.setColor(1, 1, 6);
+        tree.fillRect(0, 2, 2, 2, 7);
+        assertArrayEquals(new int[][] {{5, 5}, {5, 6}}, crop.decompress());
+        assertEquals(5, crop.getColor(0, 0));
+        assertEquals(7, tree.getColor(0, 2));
+        assertEquals(7, tree.getColor(1, 3));
+        assertEquals(2, tree.getColor(2, 2));
+    }
+
+    @Test
+    public void testDownsample2x() {
+        QuadTree half = QuadTreeTransforms.downsample2x(tree);
+        assertEquals(2, half.getDimension());
+        assertArrayEquals(tree.decompressAtLevel(1), half.decompress());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testDownsampleSinglePixel() {
+        QuadTreeTransforms.downsample2x(new QuadTreeImpl(new int[][] {{1}}));
+    }
+}
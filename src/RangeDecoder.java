@@ -0,0 +1,69 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decoder for streams written by {@link RangeEncoder}. The caller must replay the same sequence
+ * of models and indices that was used for encoding.
+ *
+ * @author Darshan
+ */
+final class RangeDecoder {
+
+    private static final int TOP = 1 << 24;
+
+    private final InputStream in;
+    private int range;
+    private int code;
+
+    RangeDecoder(InputStream in) throws IOException {
+        this.in = in;
+        range = -1;
+        code = 0;
+        for (int i = 0; i < 5; i++) {
+            code = (code << 8) | next();
+        }
+    }
+
+    int decodeBit(short[] model, int index) throws IOException {
+        int probability = model[index];
+        int bound = (range >>> RangeEncoder.PROBABILITY_BITS) * probability;
+        int bit;
+        if ((code ^ 0x80000000) < (bound ^ 0x80000000)) {
+            range = bound;
+            model[index] = (short) (probability
+                    + (((1 << RangeEncoder.PROBABILITY_BITS) - probability)
+                    >>> RangeEncoder.MOVE_BITS));
+            bit = 0;
+        } else {
+            code -= bound;
+            range -= bound;
+            model[index] = (short) (probability - (probability >>> RangeEncoder.MOVE_BITS));
+            bit = 1;
+        }
+        while ((range & 0xFFFFFFFFL) < TOP) {
+            range <<= 8;
+            code = (code << 8) | next();
+        }
+        return bit;
+    }
+
+    /**
+     * Decodes a value written by {@link RangeEncoder#encodeTree}.
+     */
+    int decodeTree(short[] model, int offset, int bits) throws IOException {
+        int m = 1;
+        for (int i = 0; i < bits; i++) {
+            m = (m << 1) | decodeBit(model, offset + m);
+        }
+        return m - (1 << bits);
+    }
+
+    private int next() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+}
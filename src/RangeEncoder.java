@@ -0,0 +1,99 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Adaptive binary range encoder.
+ * <p/>
+ * Every bit is coded against an 11-bit probability taken from a caller supplied model array, and
+ * the model is updated after each bit, so skewed contexts shrink towards a fraction of a bit per
+ * symbol. Output is written to the underlying stream as soon as it is final, which keeps memory
+ * use constant regardless of the amount of data encoded. {@link RangeDecoder} reverses it.
+ *
+ * @author Darshan
+ */
+final class RangeEncoder {
+
+    static final int PROBABILITY_BITS = 11;
+    static final int PROBABILITY_INIT = 1 << (PROBABILITY_BITS - 1);
+    static final int MOVE_BITS = 5;
+    private static final int TOP = 1 << 24;
+
+    private final OutputStream out;
+    private long low;
+    private int range;
+    private int cache;
+    private long cacheSize;
+
+    RangeEncoder(OutputStream out) {
+        this.out = out;
+        low = 0;
+        range = -1;
+        cache = 0;
+        cacheSize = 1;
+    }
+
+    /**
+     * Returns a new model array of {@code size} probabilities, all starting at one half.
+     */
+    static short[] newModel(int size) {
+        short[] model = new short[size];
+        Arrays.fill(model, (short) PROBABILITY_INIT);
+        return model;
+    }
+
+    void encodeBit(short[] model, int index, int bit) throws IOException {
+        int probability = model[index];
+        int bound = (range >>> PROBABILITY_BITS) * probability;
+        if (bit == 0) {
+            range = bound;
+            model[index] = (short) (probability
+                    + (((1 << PROBABILITY_BITS) - probability) >>> MOVE_BITS));
+        } else {
+            low += bound & 0xFFFFFFFFL;
+            range -= bound;
+            model[index] = (short) (probability - (probability >>> MOVE_BITS));
+        }
+        while ((range & 0xFFFFFFFFL) < TOP) {
+            range <<= 8;
+            shiftLow();
+        }
+    }
+
+    /**
+     * Encodes the low {@code bits} bits of {@code value}, most significant first, with a binary
+     * tree of models starting at {@code offset}. The tree uses {@code 2^bits} entries.
+     */
+    void encodeTree(short[] model, int offset, int bits, int value) throws IOException {
+        int m = 1;
+        for (int i = bits - 1; i >= 0; i--) {
+            int bit = (value >>> i) & 1;
+            encodeBit(model, offset + m, bit);
+            m = (m << 1) | bit;
+        }
+    }
+
+    /**
+     * Writes out the remaining state. The encoder must not be used afterwards.
+     */
+    void finish() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            shiftLow();
+        }
+        out.flush();
+    }
+
+    private void shiftLow() throws IOException {
+        int high = (int) (low >>> 32);
+        if (high != 0 || low < 0xFF000000L) {
+            int temp = cache;
+            do {
+                out.write(temp + high);
+                temp = 0xFF;
+            } while (--cacheSize != 0);
+            cache = (int) (low >>> 24) & 0xFF;
+        }
+        cacheSize++;
+        low = (low & 0x00FFFFFFL) << 8;
+    }
+}
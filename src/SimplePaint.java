@@ -35,6 +35,21 @@ public class SimplePaint implements Runnable {
      * @throws IllegalArgumentException if the specified {@link BufferedImage} is null
      */
     public static QuadTree buildFromImage(QuadTreeFactory quadTreeFactory, BufferedImage image) {
+        return buildFromImage(quadTreeFactory, image, false);
+    }
+
+    /**
+     * Builds a {@link QuadTree} instance from a {@link BufferedImage}, optionally keeping the
+     * alpha channel of every pixel. Every {@link QuadTree} stores full {@code int} colors, so any
+     * factory keeps the alpha channel it is given.
+     *
+     * @param image the image to compress into a {@link QuadTree}
+     * @param keepAlpha whether colors are passed to the factory as full {@code 0xAARRGGBB} values
+     * @return the compressed version of the image as a {@link QuadTree}.
+     * @throws IllegalArgumentException if the specified {@link BufferedImage} is null
+     */
+    public static QuadTree buildFromImage(QuadTreeFactory quadTreeFactory, BufferedImage image,
+            boolean keepAlpha) {
         if (image == null) {
             throw new IllegalArgumentException("Image cannot be null");
         }
@@ -46,17 +61,28 @@ public class SimplePaint implements Runnable {
         int[][] imageData = new int[dimensions][dimensions];
         for (int i = image.getMinX(); i < image.getWidth(); i++) {
             for (int j = image.getMinY(); j < image.getHeight(); j++) {
-                // Remove alpha channel if it exists
-                imageData[j][i] = image.getRGB(i, j) % 0x1000000;
+                if (keepAlpha) {
+                    imageData[j][i] = image.getRGB(i, j);
+                } else {
+                    // Remove alpha channel if it exists
+                    imageData[j][i] = image.getRGB(i, j) & 0xFFFFFF;
+                }
             }
         }
         return quadTreeFactory.buildFromIntArray(imageData);
     }
 
+    private static final String TITLE = "JPaint";
+
+    // Prunes on a worker thread, so the window stays responsive and can be drawn on meanwhile
+    private final TreePruningService pruningService =
+            new TreePruningService(SwingUtilities::invokeLater);
+    private TreePruningService.Task pruning;
+
     @Override
     public void run() {
         QuadTreeFactory quadTreeFactory = new QuadTreeFactoryImpl();
-        final JFrame window = new JFrame("JPaint");
+        final JFrame window = new JFrame(TITLE);
         // Build the paint component
         final PaintPanel paint =
                 new PaintPanel(quadTreeFactory.buildFromIntArray(new int[512][512]));
@@ -66,6 +92,7 @@ public class SimplePaint implements Runnable {
         final JMenuBar menuBar = new JMenuBar();
         final JMenu menuFile = new JMenu("File");
         final JMenuItem openMenuItem = new JMenuItem("Open");
+        final JMenuItem exportMenuItem = new JMenuItem("Export PNG");
         final JMenu menuEdit = new JMenu("Edit");
         final JMenuItem pruneMenuItem = new JMenuItem("Pruning Compression");
         final JMenu menuInfo = new JMenu("Info");
@@ -79,7 +106,12 @@ public class SimplePaint implements Runnable {
             if (returnVal == JFileChooser.APPROVE_OPTION) {
                 File f = fc.getSelectedFile();
                 try {
-                    paint.setQuadTree(buildFromImage(quadTreeFactory, ImageIO.read(f)));
+                    if (pruning != null) {
+                        pruning.cancel();
+                        pruning = null;
+                        window.setTitle(TITLE);
+                    }
+                    paint.setQuadTree(buildFromImage(quadTreeFactory, ImageIO.read(f), true));
                     window.pack();
                     window.repaint();
                 } catch (IOException e1) {
@@ -90,14 +122,24 @@ public class SimplePaint implements Runnable {
             }
         });
         menuFile.add(openMenuItem);
+        exportMenuItem.addActionListener(e -> {
+            if (fc.showSaveDialog(window) == JFileChooser.APPROVE_OPTION) {
+                try {
+                    QuadTreeExporter.writePng(paint.getQuadTree(), fc.getSelectedFile().toPath(),
+                            true);
+                } catch (IOException e1) {
+                    JOptionPane.showMessageDialog(window, "IOException: " + e1);
+                }
+            }
+        });
+        menuFile.add(exportMenuItem);
         pruneMenuItem.addActionListener(e -> {
             String depth =
                     JOptionPane.showInputDialog("Select prune depth (1 ~ MAX_INTEGER):", "8");
             if (depth != null) {
                 try {
                     int depthInt = Integer.parseInt(depth);
-                    TreePruner.pruneTree(paint.getQuadTree().getRoot(), Math.max(1, depthInt));
-                    paint.repaint();
+                    prune(window, paint, Math.max(1, depthInt));
                 } catch (NumberFormatException ignored) {
                 }
             }
@@ -131,55 +173,34 @@ public class SimplePaint implements Runnable {
         window.repaint();
     }
 
-    private static class TreePruner {
-        private static int averageColor(int[] colors) {
-            int r = 0, g = 0, b = 0;
-            for (int color : colors) {
-                r += color / 65536;
-                g += (color % 65536) / 256;
-                b += color % 256;
-            }
-            return (int) Math.round((double) r / colors.length) * 65536
-                    + (int) Math.round((double) g / colors.length) * 256 + (int) Math
-                    .round((double) b / colors.length);
+    private void prune(JFrame window, PaintPanel paint, int depth) {
+        if (pruning != null) {
+            pruning.cancel();
         }
+        pruning = pruningService.submit(paint.getQuadTree(), depth,
+                new TreePruningService.Listener() {
+                    @Override
+                    public void progress(double fraction) {
+                        window.setTitle(String.format("%s - pruning %.0f%%", TITLE,
+                                fraction * 100));
+                    }
 
-        private static boolean isCombinable(QuadNode node) {
-            if (node == null) {
-                return false;
-            }
-            for (QuadNode.QuadName quad : QuadNode.QuadName.values()) {
-                if (node.getQuadrant(quad) == null || !node.getQuadrant(quad).isLeaf()) {
-                    return false;
-                }
-            }
-            return true;
-        }
+                    @Override
+                    public void completed(QuadTree result) {
+                        pruning = null;
+                        window.setTitle(TITLE);
+                        paint.setQuadTree(result);
+                    }
 
-        public static void pruneTree(QuadNode root, int depth) {
-            if (root == null || root.isLeaf()) {
-                return;
-            }
-            if (depth <= 0 && isCombinable(root)) {
-                int tl = root.getQuadrant(QuadNode.QuadName.TOP_LEFT).getColor();
-                int tr = root.getQuadrant(QuadNode.QuadName.TOP_RIGHT).getColor();
-                int bl = root.getQuadrant(QuadNode.QuadName.BOTTOM_LEFT).getColor();
-                int br = root.getQuadrant(QuadNode.QuadName.BOTTOM_RIGHT).getColor();
-                root.setQuadrant(QuadNode.QuadName.TOP_LEFT, null);
-                root.setQuadrant(QuadNode.QuadName.TOP_RIGHT, null);
-                root.setQuadrant(QuadNode.QuadName.BOTTOM_LEFT, null);
-                root.setQuadrant(QuadNode.QuadName.BOTTOM_RIGHT, null);
-                root.setColor(averageColor(new int[]{tl, tr, bl, br}));
-            } else {
-                pruneTree(root.getQuadrant(QuadNode.QuadName.TOP_LEFT), depth - 1);
-                pruneTree(root.getQuadrant(QuadNode.QuadName.TOP_RIGHT), depth - 1);
-                pruneTree(root.getQuadrant(QuadNode.QuadName.BOTTOM_LEFT), depth - 1);
-                pruneTree(root.getQuadrant(QuadNode.QuadName.BOTTOM_RIGHT), depth - 1);
-                if (depth <= 0) {
-                    pruneTree(root, depth);
-                }
-            }
-        }
+                    @Override
+                    public void failed(Throwable error) {
+                        pruning = null;
+                        window.setTitle(TITLE);
+                        JOptionPane.showMessageDialog(window, "Pruning failed: " + error);
+                    }
+                });
+        // Strokes drawn while pruning go through the task so they are kept in the result
+        paint.setQuadTree(pruning.getTree());
     }
 
     private static class PaintPanel extends Component
@@ -258,6 +279,12 @@ public class SimplePaint implements Runnable {
 
         @Override
         public void mouseClicked(MouseEvent e) {
+            // Right click acts as a paint bucket
+            if (SwingUtilities.isRightMouseButton(e) && e.getX() >= 0 && e.getY() >= 0
+                    && e.getX() < this.tree.getDimension() && e.getY() < this.tree.getDimension()) {
+                this.tree.floodFill(e.getX(), e.getY(), this.currentColor);
+                this.repaint();
+            }
         }
 
         @Override
@@ -296,41 +323,7 @@ public class SimplePaint implements Runnable {
         }
 
         private void drawLine(int fromX, int fromY, int toX, int toY) {
-            fromX = Math.min(Math.max(0, fromX), this.tree.getDimension() - 1);
-            fromY = Math.min(Math.max(0, fromY), this.tree.getDimension() - 1);
-            toX = Math.min(Math.max(0, toX), this.tree.getDimension() - 1);
-            toY = Math.min(Math.max(0, toY), this.tree.getDimension() - 1);
-            int deltaX = toX - fromX;
-            int deltaY = toY - fromY;
-            if (deltaX == 0) {
-                for (int y = fromY; toY > fromY ? y <= toY : y >= toY; ) {
-                    this.tree.setColor(fromX, y, this.currentColor);
-                    if (toY > fromY) {
-                        y++;
-                    } else {
-                        y--;
-                    }
-                }
-                return;
-            }
-            float error = 0;
-            float deltaError = Math.abs((float) deltaY / deltaX);
-            int y = fromY;
-            for (int x = fromX; toX > fromX ? x <= toX : x >= toX; ) {
-                this.tree.setColor(x, y, this.currentColor);
-                error += deltaError;
-                while (error >= 0.5) {
-                    this.tree.setColor(x, y, this.currentColor);
-                    y = Math.min(Math.max(y + (toY > fromY ? 1 : -1), 0),
-                            this.tree.getDimension() - 1);
-                    error -= 1.0;
-                }
-                if (toX > fromX) {
-                    x++;
-                } else {
-                    x--;
-                }
-            }
+            StrokeRasterizer.drawLine(this.tree, fromX, fromY, toX, toY, this.currentColor);
         }
     }
 }
@@ -0,0 +1,92 @@
+/**
+ * Turns the segments of a paint stroke into pixels, the way {@link SimplePaint} draws while the
+ * mouse is dragged. Kept separate from the UI so that strokes can be replayed headless, for
+ * example by {@link StrokeReplay}.
+ *
+ * @author Darshan
+ */
+public final class StrokeRasterizer {
+
+    /**
+     * Receives the pixels of a segment in drawing order. A pixel may be visited more than once.
+     */
+    public interface PixelVisitor {
+
+        /**
+         * Called for a pixel of the segment.
+         *
+         * @param x the {@code x}-coordinate
+         * @param y the {@code y}-coordinate
+         */
+        void visit(int x, int y);
+    }
+
+    private StrokeRasterizer() {
+    }
+
+    /**
+     * Sets every pixel of the segment from {@code (fromX, fromY)} to {@code (toX, toY)} to
+     * {@code color}. End points outside the image are clamped to its border.
+     *
+     * @param tree the image to draw on
+     * @param fromX the {@code x}-coordinate of the start
+     * @param fromY the {@code y}-coordinate of the start
+     * @param toX the {@code x}-coordinate of the end
+     * @param toY the {@code y}-coordinate of the end
+     * @param color the color of the line
+     */
+    public static void drawLine(QuadTree tree, int fromX, int fromY, int toX, int toY,
+            int color) {
+        drawLine(tree.getDimension(), fromX, fromY, toX, toY,
+            (x, y) -> tree.setColor(x, y, color));
+    }
+
+    /**
+     * Visits every pixel of the segment from {@code (fromX, fromY)} to {@code (toX, toY)} in an
+     * image of side {@code dimension}. End points outside the image are clamped to its border.
+     *
+     * @param dimension the side length of the image
+     * @param fromX the {@code x}-coordinate of the start
+     * @param fromY the {@code y}-coordinate of the start
+     * @param toX the {@code x}-coordinate of the end
+     * @param toY the {@code y}-coordinate of the end
+     * @param visitor receives the pixels of the segment
+     */
+    public static void drawLine(int dimension, int fromX, int fromY, int toX, int toY,
+            PixelVisitor visitor) {
+        fromX = Math.min(Math.max(0, fromX), dimension - 1);
+        fromY = Math.min(Math.max(0, fromY), dimension - 1);
+        toX = Math.min(Math.max(0, toX), dimension - 1);
+        toY = Math.min(Math.max(0, toY), dimension - 1);
+        int deltaX = toX - fromX;
+        int deltaY = toY - fromY;
+        if (deltaX == 0) {
+            for (int y = fromY; toY > fromY ? y <= toY : y >= toY; ) {
+                visitor.visit(fromX, y);
+                if (toY > fromY) {
+                    y++;
+                } else {
+                    y--;
+                }
+            }
+            return;
+        }
+        float error = 0;
+        float deltaError = Math.abs((float) deltaY / deltaX);
+        int y = fromY;
+        for (int x = fromX; toX > fromX ? x <= toX : x >= toX; ) {
+            visitor.visit(x, y);
+            error += deltaError;
+            while (error >= 0.5) {
+                visitor.visit(x, y);
+                y = Math.min(Math.max(y + (toY > fromY ? 1 : -1), 0), dimension - 1);
+                error -= 1.0;
+            }
+            if (toX > fromX) {
+                x++;
+            } else {
+                x--;
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Headless load generator that replays paint strokes into a {@link QuadTree} and measures the
+ * latency of every {@link QuadTree#setColor} the strokes cause.
+ * <p/>
+ * A stroke is the list of mouse positions of one drag, stored as {@code x0, y0, x1, y1, ...}, and
+ * is drawn segment by segment with {@link StrokeRasterizer} exactly like {@link SimplePaint}
+ * does. Traces are either recorded, one stroke per line as space separated {@code x,y} pairs, or
+ * generated as random walks. Every call is timed into a {@link LatencyHistogram}, and where the
+ * JVM supports it the bytes allocated by the replaying thread are measured per stroke.
+ * <p/>
+ * Usage: {@code java StrokeReplay [dimension] [strokes] [trace file]}
+ *
+ * @author Darshan
+ */
+public class StrokeReplay {
+
+    /**
+     * The outcome of a replay.
+     */
+    public static class Result {
+
+        private final LatencyHistogram latencies;
+        private final long nanos;
+        private final int strokes;
+        private final long allocatedBytes;
+
+        Result(LatencyHistogram latencies, long nanos, int strokes, long allocatedBytes) {
+            this.latencies = latencies;
+            this.nanos = nanos;
+            this.strokes = strokes;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        /**
+         * Returns the latencies of the individual {@code setColor} calls in nanoseconds.
+         *
+         * @return the latency histogram
+         */
+        public LatencyHistogram getLatencies() {
+            return latencies;
+        }
+
+        /**
+         * Returns the number of {@code setColor} calls per second of replay, timing included.
+         *
+         * @return the throughput
+         */
+        public double getOperationsPerSecond() {
+            return latencies.getCount() / (nanos / 1e9);
+        }
+
+        /**
+         * Returns the average number of bytes allocated per stroke, or {@code -1} if the JVM
+         * cannot measure allocation.
+         *
+         * @return the allocation per stroke
+         */
+        public double getBytesPerStroke() {
+            return allocatedBytes < 0 ? -1 : (double) allocatedBytes / Math.max(1, strokes);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("ops=%d %.0f ops/s p50=%dns p99=%dns p999=%dns max=%dns "
+                    + "alloc=%.0f B/stroke", latencies.getCount(), getOperationsPerSecond(),
+                    latencies.getValueAtPercentile(50), latencies.getValueAtPercentile(99),
+                    latencies.getValueAtPercentile(99.9), latencies.getMax(),
+                    getBytesPerStroke());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int dimension = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        List<int[]> strokes;
+        if (args.length > 2) {
+            try (Reader in = Files.newBufferedReader(Paths.get(args[2]))) {
+                strokes = readTrace(in);
+            }
+        } else {
+            strokes = randomStrokes(dimension, count, new Random(1));
+        }
+        int[][] image = new int[dimension][dimension];
+        QuadTreeFactory[] factories = {new QuadTreeFactoryImpl(), new PaletteQuadTreeFactoryImpl(),
+            new PlanarQuadTreeFactoryImpl(false)};
+        for (QuadTreeFactory factory : factories) {
+            //the first replay only warms up the JIT
+            replay(factory.buildFromIntArray(image), strokes, 0xFFFFFF);
+            Result result = replay(factory.buildFromIntArray(image), strokes, 0xFFFFFF);
+            System.out.printf("%-28s %s%n", factory.getClass().getSimpleName(), result);
+        }
+    }
+
+    /**
+     * Draws {@code strokes} onto {@code tree} and measures every {@code setColor} call.
+     *
+     * @param tree the image to draw on
+     * @param strokes the strokes, each as {@code x0, y0, x1, y1, ...}
+     * @param color the color to draw with
+     * @return the measurements
+     * @throws IllegalArgumentException if {@code tree} or {@code strokes} is null
+     */
+    public static Result replay(QuadTree tree, List<int[]> strokes, int color) {
+        if (tree == null || strokes == null) {
+            throw new IllegalArgumentException();
+        }
+        LatencyHistogram latencies = new LatencyHistogram();
+        StrokeRasterizer.PixelVisitor timed = (x, y) -> {
+            long start = System.nanoTime();
+            tree.setColor(x, y, color);
+            latencies.record(System.nanoTime() - start);
+        };
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int[] stroke : strokes) {
+            for (int i = 2; i + 1 < stroke.length; i += 2) {
+                StrokeRasterizer.drawLine(tree.getDimension(), stroke[i - 2], stroke[i - 1],
+                        stroke[i], stroke[i + 1], timed);
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        long allocatedAfter = allocatedBytes();
+        long allocated = allocatedBefore < 0 || allocatedAfter < 0 ? -1
+                : allocatedAfter - allocatedBefore;
+        return new Result(latencies, nanos, strokes.size(), allocated);
+    }
+
+    /**
+     * Reads a recorded trace with one stroke per line, written as space separated {@code x,y}
+     * pairs. Blank lines and lines starting with {@code #} are skipped.
+     *
+     * @param in the trace
+     * @return the strokes
+     * @throws IOException if the trace cannot be read or is malformed
+     */
+    public static List<int[]> readTrace(Reader in) throws IOException {
+        BufferedReader reader = new BufferedReader(in);
+        List<int[]> strokes = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] points = line.split("\\s+");
+            int[] stroke = new int[points.length * 2];
+            for (int i = 0; i < points.length; i++) {
+                String[] coordinates = points[i].split(",");
+                if (coordinates.length != 2) {
+                    throw new IOException("Malformed point: " + points[i]);
+                }
+                try {
+                    stroke[2 * i] = Integer.parseInt(coordinates[0]);
+                    stroke[2 * i + 1] = Integer.parseInt(coordinates[1]);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Malformed point: " + points[i], e);
+                }
+            }
+            strokes.add(stroke);
+        }
+        return strokes;
+    }
+
+    /**
+     * Generates strokes that wander like a hand-held mouse: each moves a few pixels per event in a
+     * slowly turning direction.
+     *
+     * @param dimension the side length of the image
+     * @param count the number of strokes
+     * @param random the source of randomness
+     * @return the strokes
+     */
+    public static List<int[]> randomStrokes(int dimension, int count, Random random) {
+        List<int[]> strokes = new ArrayList<>(count);
+        for (int s = 0; s < count; s++) {
+            int points = 10 + random.nextInt(90);
+            int[] stroke = new int[points * 2];
+            double x = random.nextInt(dimension);
+            double y = random.nextInt(dimension);
+            double angle = random.nextDouble() * 2 * Math.PI;
+            for (int i = 0; i < points; i++) {
+                stroke[2 * i] = (int) x;
+                stroke[2 * i + 1] = (int) y;
+                angle += random.nextGaussian() * 0.3;
+                double step = 1 + random.nextInt(8);
+                x = Math.min(Math.max(0, x + Math.cos(angle) * step), dimension - 1);
+                y = Math.min(Math.max(0, y + Math.sin(angle) * step), dimension - 1);
+            }
+            strokes.add(stroke);
+        }
+        return strokes;
+    }
+
+    //helper methods
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+            if (hotspot.isThreadAllocatedMemorySupported()
+                    && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
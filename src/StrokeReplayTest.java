@@ -0,0 +1,84 @@
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class StrokeReplayTest {
+
+    @Test
+    public void testReadTrace() throws IOException {
+        List<int[]> strokes = StrokeReplay.readTrace(new StringReader(
+                "# two strokes\n0,0 3,0 3,2\n\n1,1 1,1\n"));
+        assertEquals(2, strokes.size());
+        assertArrayEquals(new int[] {0, 0, 3, 0, 3, 2}, strokes.get(0));
+    }
+
+    @Test (expected = IOException.class)
+    public void testReadMalformedTrace() throws IOException {
+        StrokeReplay.readTrace(new StringReader("1,2 3\n"));
+    }
+
+    @Test
+    public void testReplay() {
+        QuadTree tree = new QuadTreeImpl(new int[8][8]);
+        List<int[]> strokes = List.of(new int[] {0, 0, 3, 0, 3, 2});
+        StrokeReplay.Result result = StrokeReplay.replay(tree, strokes, 5);
+        assertEquals(5, tree.getColor(2, 0));
+        assertEquals(5, tree.getColor(3, 1));
+        assertEquals(0, tree.getColor(0, 1));
+        assertEquals(4 + 3, result.getLatencies().getCount());
+    }
+
+    @Test
+    public void testRasterizerClampsEndpoints() {
+        QuadTree tree = new QuadTreeImpl(new int[16][16]);
+        StrokeRasterizer.drawLine(tree, -5, 2, 20, 9, 1);
+        assertEquals(1, tree.getColor(0, 2));
+        assertEquals(1, tree.getColor(15, 9));
+        for (int[] stroke : StrokeReplay.randomStrokes(16, 5, new Random(3))) {
+            for (int i = 0; i < stroke.length; i++) {
+                assertTrue(stroke[i] >= 0 && stroke[i] < 16);
+            }
+        }
+    }
+
+    @Test
+    public void testRasterizerPixels() {
+        //the same pixels PaintPanel.drawLine set before it moved to StrokeRasterizer
+        assertArrayEquals(new int[][] {
+            {1, 1, 0, 0},
+            {0, 0, 1, 1},
+            {0, 0, 0, 0},
+            {0, 0, 0, 0}
+        }, line(4, 0, 0, 3, 1));
+        assertArrayEquals(new int[][] {
+            {1, 0, 0, 0},
+            {0, 1, 0, 0},
+            {0, 0, 1, 0},
+            {0, 0, 0, 1}
+        }, line(4, 3, 3, 0, 0));
+        //steep segments advance several rows per column and overshoot the end point in the last
+        int[][] steep = new int[8][8];
+        steep[0][0] = steep[1][0] = steep[2][0] = 1;
+        steep[3][1] = steep[4][1] = steep[5][1] = 1;
+        assertArrayEquals(steep, line(8, 0, 0, 1, 3));
+        //vertical segments are drawn separately
+        assertArrayEquals(new int[][] {
+            {0, 0, 0, 0},
+            {0, 0, 1, 0},
+            {0, 0, 1, 0},
+            {0, 0, 1, 0}
+        }, line(4, 2, 3, 2, 1));
+    }
+
+    //helper methods
+    private static int[][] line(int dimension, int fromX, int fromY, int toX, int toY) {
+        QuadTree tree = new QuadTreeImpl(new int[dimension][dimension]);
+        StrokeRasterizer.drawLine(tree, fromX, fromY, toX, toY, 1);
+        return tree.decompress();
+    }
+}
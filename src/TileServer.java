@@ -0,0 +1,387 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Embedded HTTP server on the loopback interface that serves tiles of registered images straight
+ * from their {@link QuadTree}s.
+ * <p/>
+ * {@code GET /tile/{image}/{level}/{x}/{y}} returns tile {@code (x, y)} of the image scaled down
+ * to {@code level} as a PNG, where levels are numbered like in {@link QuadTree#decompressAtLevel}.
+ * Tiles are {@link #TILE_SIZE} pixels wide, or the whole level if it is smaller. A tile is
+ * rendered by descending only into the nodes it covers, never below the requested level, so a
+ * request costs about as much as the pixels it returns rather than the whole image.
+ * <p/>
+ * Encoded tiles are kept in an LRU cache bounded in bytes. Every response carries an
+ * {@code ETag} derived from the registration of the image and the tile coordinates, so a request
+ * with a matching {@code If-None-Match} is answered with {@code 304} without rendering or
+ * looking up anything. {@code GET /metrics} reports request counts, cache efficiency and
+ * latencies as plain text.
+ * <p/>
+ * Requests run on virtual threads where the JVM has them and on a cached thread pool otherwise.
+ * <p/>
+ * Usage: {@code java TileServer [port] [image files]}
+ *
+ * @author Darshan
+ */
+public class TileServer implements AutoCloseable {
+
+    /**
+     * The side length of a full tile in pixels.
+     */
+    public static final int TILE_SIZE = 256;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, Image> images = new ConcurrentHashMap<>();
+    private final AtomicLong generations = new AtomicLong();
+    private final TileCache cache;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    /**
+     * Starts a server on the loopback interface.
+     *
+     * @param port the port to listen on, or {@code 0} for any free port
+     * @param cacheBytes the most bytes of encoded tiles to keep in memory
+     * @throws IOException if the port cannot be bound
+     * @throws IllegalArgumentException if {@code port} is not a valid port or {@code cacheBytes}
+     * is negative
+     */
+    public TileServer(int port, long cacheBytes) throws IOException {
+        if (port < 0 || port > 0xFFFF || cacheBytes < 0) {
+            throw new IllegalArgumentException();
+        }
+        cache = new TileCache(cacheBytes);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                0);
+        executor = newExecutor();
+        server.setExecutor(executor);
+        server.createContext("/tile/", this::handleTile);
+        server.createContext("/metrics", this::handleMetrics);
+        server.start();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        TileServer server = new TileServer(port, 64 << 20);
+        QuadTreeFactory factory = new QuadTreeFactoryImpl();
+        for (int i = 1; i < args.length; i++) {
+            File file = new File(args[i]);
+            String name = file.getName().replaceFirst("\\.[^.]*$", "");
+            server.register(name, SimplePaint.buildFromImage(factory, ImageIO.read(file)));
+            System.out.println("http://localhost:" + server.getPort() + "/tile/" + name
+                    + "/0/0/0");
+        }
+        System.out.println("http://localhost:" + server.getPort() + "/metrics");
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the local port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Serves a copy of {@code tree} under {@code name}, replacing any image of that name. Tiles
+     * cached for the replaced image are never served again, so edits are published by
+     * registering the tree again.
+     *
+     * @param name the name of the image in tile paths
+     * @param tree the image, copied before this method returns
+     * @throws IllegalArgumentException if {@code name} is empty or contains a {@code /}, or if
+     * {@code tree} is null
+     */
+    public void register(String name, QuadTree tree) {
+        if (name == null || name.isEmpty() || name.indexOf('/') >= 0 || tree == null) {
+            throw new IllegalArgumentException();
+        }
+        //a private copy can be read by many requests at once while the original is edited
+        QuadTreeImpl copy = new QuadTreeImpl(QuadTreeImpl.copyOf(tree.getRoot(),
+                tree.getDimension()));
+        copy.compact();
+        images.put(name, new Image(copy, generations.incrementAndGet()));
+    }
+
+    /**
+     * Stops serving the image registered under {@code name}.
+     *
+     * @param name the name of the image
+     * @return {@code true} if an image was registered under {@code name}
+     */
+    public boolean unregister(String name) {
+        return images.remove(name) != null;
+    }
+
+    /**
+     * Returns the metrics served at {@code /metrics}, one {@code name value} pair per line.
+     * Latencies are in nanoseconds and measured from parsing a request to sending its body.
+     *
+     * @return the current metrics
+     */
+    public String getMetrics() {
+        StringBuilder metrics = new StringBuilder();
+        metric(metrics, "requests", requests.sum());
+        metric(metrics, "cache_hits", hits.sum());
+        metric(metrics, "cache_misses", misses.sum());
+        metric(metrics, "not_modified", notModified.sum());
+        metric(metrics, "errors", errors.sum());
+        metric(metrics, "bytes_sent", bytesSent.sum());
+        metric(metrics, "cache_entries", cache.size());
+        metric(metrics, "cache_bytes", cache.bytes());
+        synchronized (latencies) {
+            metric(metrics, "latency_p50", latencies.getValueAtPercentile(50));
+            metric(metrics, "latency_p99", latencies.getValueAtPercentile(99));
+            metric(metrics, "latency_p999", latencies.getValueAtPercentile(99.9));
+            metric(metrics, "latency_max", latencies.getMax());
+        }
+        return metrics.toString();
+    }
+
+    /**
+     * Stops the server, closing open connections.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    //helper methods
+    private void handleTile(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        requests.increment();
+        try {
+            if (!isRead(exchange)) {
+                send(exchange, 405, null, null);
+                return;
+            }
+            //"", "tile", image, level, x, y
+            String[] parts = exchange.getRequestURI().getPath().split("/");
+            if (parts.length != 6) {
+                send(exchange, 404, null, null);
+                return;
+            }
+            Image image = images.get(parts[2]);
+            int level;
+            int x;
+            int y;
+            try {
+                level = Integer.parseInt(parts[3]);
+                x = Integer.parseInt(parts[4]);
+                y = Integer.parseInt(parts[5]);
+            } catch (NumberFormatException e) {
+                send(exchange, 400, null, null);
+                return;
+            }
+            if (image == null || !image.hasTile(level, x, y)) {
+                send(exchange, 404, null, null);
+                return;
+            }
+            String tag = "\"" + image.generation + "-" + level + "-" + x + "-" + y + "\"";
+            exchange.getResponseHeaders().set("ETag", tag);
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), tag)) {
+                notModified.increment();
+                send(exchange, 304, null, null);
+                return;
+            }
+            byte[] png = cache.get(tag);
+            if (png == null) {
+                misses.increment();
+                //concurrent misses of the same tile may both render it, which is harmless
+                png = image.encode(level, x, y);
+                cache.put(tag, png);
+            } else {
+                hits.increment();
+            }
+            send(exchange, 200, "image/png", png);
+        } catch (IOException | RuntimeException e) {
+            errors.increment();
+            throw e;
+        } finally {
+            exchange.close();
+            long nanos = System.nanoTime() - start;
+            synchronized (latencies) {
+                latencies.record(nanos);
+            }
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            if (!isRead(exchange)) {
+                send(exchange, 405, null, null);
+                return;
+            }
+            send(exchange, 200, "text/plain; charset=utf-8",
+                    getMetrics().getBytes(StandardCharsets.UTF_8));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static boolean isRead(HttpExchange exchange) {
+        String method = exchange.getRequestMethod();
+        return "GET".equals(method) || "HEAD".equals(method);
+    }
+
+    private void send(HttpExchange exchange, int status, String type, byte[] body)
+            throws IOException {
+        if (status >= 400) {
+            errors.increment();
+        }
+        if (body == null) {
+            //-1 announces an empty body
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", type);
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Content-Length", Integer.toString(body.length));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+        bytesSent.add(body.length);
+    }
+
+    //If-None-Match holds either * or a comma separated list of tags, possibly weak
+    private static boolean matches(String header, String tag) {
+        if (header == null) {
+            return false;
+        }
+        for (String candidate : header.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void metric(StringBuilder metrics, String name, long value) {
+        metrics.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            //virtual threads need Java 21, before that a pool grows with the open requests
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "tile-server");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * A registered image. The generation is unique across registrations, so tags and cache keys
+     * of a replaced image never match the new one.
+     */
+    private static class Image {
+
+        private final QuadTree tree;
+        private final long generation;
+
+        Image(QuadTree tree, long generation) {
+            this.tree = tree;
+            this.generation = generation;
+        }
+
+        boolean hasTile(int level, int x, int y) {
+            if (level < 0 || level > 30 || (1 << level) > tree.getDimension()) {
+                return false;
+            }
+            int tiles = Math.max(1, (1 << level) / TILE_SIZE);
+            return x >= 0 && x < tiles && y >= 0 && y < tiles;
+        }
+
+        byte[] encode(int level, int x, int y) throws IOException {
+            int size = Math.min(TILE_SIZE, 1 << level);
+            int[] pixels = new int[size * size];
+            LevelOfDetail.renderWindow(tree, level, x * size, y * size, size, size, pixels);
+            //like SimplePaint, tiles are opaque and ignore the alpha byte
+            BufferedImage tile = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+            tile.setRGB(0, 0, size, size, pixels, 0, size);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(tile, "png", out);
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Encoded tiles by tag, evicting the least recently used ones once the total size exceeds the
+     * capacity.
+     */
+    private static class TileCache {
+
+        private final long capacity;
+        private final LinkedHashMap<String, byte[]> tiles = new LinkedHashMap<>(16, 0.75f, true);
+        private long bytes;
+
+        TileCache(long capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized byte[] get(String tag) {
+            return tiles.get(tag);
+        }
+
+        synchronized void put(String tag, byte[] tile) {
+            if (tile.length > capacity) {
+                return;
+            }
+            byte[] previous = tiles.put(tag, tile);
+            bytes += tile.length - (previous == null ? 0 : previous.length);
+            Iterator<Map.Entry<String, byte[]>> eldest = tiles.entrySet().iterator();
+            while (bytes > capacity) {
+                bytes -= eldest.next().getValue().length;
+                eldest.remove();
+            }
+        }
+
+        synchronized int size() {
+            return tiles.size();
+        }
+
+        synchronized long bytes() {
+            return bytes;
+        }
+    }
+}
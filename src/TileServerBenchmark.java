@@ -0,0 +1,96 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Command line load test of {@link TileServer} that runs the server and its clients in the same
+ * JVM. Every client repeatedly asks for a random tile of one of the three finest levels of a
+ * synthetic image and, like a browser, revalidates tiles it has seen before with their
+ * {@code ETag}. Prints the throughput and latency percentiles seen by the clients, followed by
+ * the metrics of the server.
+ * <p/>
+ * Usage: {@code java TileServerBenchmark [dimension] [clients] [seconds]}
+ *
+ * @author Darshan
+ */
+public class TileServerBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int dimension = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int[][] img = new int[dimension][dimension];
+        for (int y = 0; y < dimension; y++) {
+            for (int x = 0; x < dimension; x++) {
+                //flat areas next to a noisy band, like a scanned page with a photo
+                img[y][x] = y < dimension / 2 ? 0xF0F0F0 : ((x * 7) ^ (y * 13)) & 0xFFFFFF;
+            }
+        }
+        try (TileServer server = new TileServer(0, 32 << 20)) {
+            server.register("bench", new QuadTreeImpl(img));
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+            List<LatencyHistogram> results = new ArrayList<>();
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                LatencyHistogram latencies = new LatencyHistogram();
+                results.add(latencies);
+                Random random = new Random(i);
+                Thread thread = new Thread(() -> run(server.getPort(), dimension, deadline, random,
+                        latencies));
+                threads.add(thread);
+                thread.start();
+            }
+            LatencyHistogram total = new LatencyHistogram();
+            for (int i = 0; i < clients; i++) {
+                threads.get(i).join();
+                total.add(results.get(i));
+            }
+            System.out.printf("%d clients: %.0f requests/s p50=%dus p99=%dus p999=%dus max=%dus%n",
+                    clients, total.getCount() / (double) seconds,
+                    total.getValueAtPercentile(50) / 1000, total.getValueAtPercentile(99) / 1000,
+                    total.getValueAtPercentile(99.9) / 1000, total.getMax() / 1000);
+            System.out.print(server.getMetrics());
+        }
+    }
+
+    //helper methods
+    private static void run(int port, int dimension, long deadline, Random random,
+            LatencyHistogram latencies) {
+        int finest = Integer.numberOfTrailingZeros(dimension);
+        Map<String, String> tags = new HashMap<>();
+        byte[] buffer = new byte[8192];
+        while (System.nanoTime() < deadline) {
+            int level = Math.max(0, finest - random.nextInt(3));
+            int tiles = Math.max(1, (1 << level) / TileServer.TILE_SIZE);
+            String path = "/tile/bench/" + level + "/" + random.nextInt(tiles) + "/"
+                    + random.nextInt(tiles);
+            long start = System.nanoTime();
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:"
+                        + port + path).openConnection();
+                String tag = tags.get(path);
+                if (tag != null) {
+                    connection.setRequestProperty("If-None-Match", tag);
+                }
+                if (connection.getResponseCode() == 200) {
+                    tags.put(path, connection.getHeaderField("ETag"));
+                }
+                //reading to the end lets the connection be reused
+                try (InputStream in = connection.getInputStream()) {
+                    while (in.read(buffer) >= 0) {
+                        continue;
+                    }
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            latencies.record(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+import static org.junit.Assert.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TileServerTest {
+
+    TileServer server;
+    int[][] img;
+    @Before
+    public void setUp() throws IOException {
+        server = new TileServer(0, 1 << 20);
+        img = new int[512][512];
+        for (int y = 0; y < 512; y++) {
+            for (int x = 0; x < 512; x++) {
+                img[y][x] = x < 256 ? 0x102030 : (y < 256 ? 0x405060 : (x + y) & 0xFF);
+            }
+        }
+        server.register("test", new QuadTreeImpl(img));
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void testTileMatchesLevel() throws IOException {
+        QuadTree tree = new QuadTreeImpl(img);
+        HttpURLConnection connection = open("/tile/test/9/1/1");
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("image/png", connection.getContentType());
+        BufferedImage tile;
+        try (InputStream in = connection.getInputStream()) {
+            tile = ImageIO.read(in);
+        }
+        assertEquals(256, tile.getWidth());
+        for (int y = 0; y < 256; y++) {
+            for (int x = 0; x < 256; x++) {
+                assertEquals(img[256 + y][256 + x], tile.getRGB(x, y) & 0xFFFFFF);
+            }
+        }
+        //levels smaller than a tile are served whole
+        connection = open("/tile/test/2/0/0");
+        try (InputStream in = connection.getInputStream()) {
+            tile = ImageIO.read(in);
+        }
+        int[][] level = tree.decompressAtLevel(2);
+        assertEquals(4, tile.getWidth());
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                assertEquals(level[y][x], tile.getRGB(x, y) & 0xFFFFFF);
+            }
+        }
+    }
+
+    @Test
+    public void testETag() throws IOException {
+        HttpURLConnection connection = open("/tile/test/8/0/0");
+        assertEquals(200, connection.getResponseCode());
+        String tag = connection.getHeaderField("ETag");
+        assertNotNull(tag);
+        connection.getInputStream().close();
+        connection = open("/tile/test/8/0/0");
+        connection.setRequestProperty("If-None-Match", tag);
+        assertEquals(304, connection.getResponseCode());
+        //registering the image again changes the tags of all of its tiles
+        server.register("test", new QuadTreeImpl(new int[512][512]));
+        connection = open("/tile/test/8/0/0");
+        connection.setRequestProperty("If-None-Match", tag);
+        assertEquals(200, connection.getResponseCode());
+        assertNotEquals(tag, connection.getHeaderField("ETag"));
+        connection.getInputStream().close();
+    }
+
+    @Test
+    public void testCacheAndMetrics() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            HttpURLConnection connection = open("/tile/test/9/0/1");
+            assertEquals(200, connection.getResponseCode());
+            connection.getInputStream().close();
+        }
+        assertEquals(404, open("/tile/test/9/2/0").getResponseCode());
+        String metrics = get("/metrics");
+        assertTrue(metrics, metrics.contains("requests 4\n"));
+        assertTrue(metrics, metrics.contains("cache_misses 1\n"));
+        assertTrue(metrics, metrics.contains("cache_hits 2\n"));
+        assertTrue(metrics, metrics.contains("cache_entries 1\n"));
+        assertTrue(metrics, metrics.contains("errors 1\n"));
+        //latencies are recorded after the response is sent, so only the counts are compared
+        assertTrue(server.getMetrics().startsWith("requests 4\n"));
+    }
+
+    @Test
+    public void testCacheEviction() throws IOException {
+        HttpURLConnection connection = open("/tile/test/9/1/1");
+        int length = connection.getContentLength();
+        assertTrue(length > 0);
+        connection.getInputStream().close();
+        server.close();
+        //room for that single tile
+        server = new TileServer(0, length);
+        server.register("test", new QuadTreeImpl(img));
+        for (String path : new String[] {"/tile/test/9/1/1", "/tile/test/9/1/0"}) {
+            connection = open(path);
+            assertEquals(200, connection.getResponseCode());
+            connection.getInputStream().close();
+        }
+        String metrics = server.getMetrics();
+        assertTrue(metrics, metrics.contains("cache_entries 1\n"));
+        connection = open("/tile/test/9/1/1");
+        connection.getInputStream().close();
+        assertTrue(server.getMetrics().contains("cache_misses 3\n"));
+    }
+
+    @Test
+    public void testInvalidRequests() throws IOException {
+        assertEquals(404, open("/tile/missing/0/0/0").getResponseCode());
+        assertEquals(404, open("/tile/test/10/0/0").getResponseCode());
+        assertEquals(404, open("/tile/test/-1/0/0").getResponseCode());
+        assertEquals(404, open("/tile/test/1/1/0").getResponseCode());
+        assertEquals(404, open("/tile/test/0/0").getResponseCode());
+        assertEquals(400, open("/tile/test/a/0/0").getResponseCode());
+        HttpURLConnection post = open("/tile/test/0/0/0");
+        post.setRequestMethod("POST");
+        assertEquals(405, post.getResponseCode());
+        assertTrue(server.unregister("test"));
+        assertEquals(404, open("/tile/test/0/0/0").getResponseCode());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testInvalidName() {
+        server.register("a/b", new QuadTreeImpl(img));
+    }
+
+    //helper methods
+    private HttpURLConnection open(String path) throws IOException {
+        return (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + path)
+                .openConnection();
+    }
+
+    private String get(String path) throws IOException {
+        try (InputStream in = open(path).getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
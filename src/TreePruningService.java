@@ -0,0 +1,371 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prunes and compacts {@link QuadTree}s on worker threads instead of the thread that owns them.
+ * <p/>
+ * {@link #submit} copies the nodes of the tree on the calling thread and returns at once; the
+ * copy is then pruned and compacted on a worker, so the live tree is never touched concurrently.
+ * Pruning collapses every subtree that starts {@code depth} levels below the root into a single
+ * leaf of its average color, and compaction merges the equal siblings this creates.
+ * <p/>
+ * The result is always a new {@link QuadTreeImpl} built from nodes, whatever kind of tree was
+ * submitted. Planar, palette and dense block trees are not rebuilt in their own layout, so
+ * callers that need one should rebuild it with
+ * {@link QuadTreeFactory#buildFromIntArray} from {@link QuadTree#decompress()}.
+ * <p/>
+ * Edits made while a task runs should go through {@link Task#getTree()}, which applies them to
+ * the live tree and records them. When the worker finishes, the recorded edits are replayed onto
+ * the pruned tree and the result is handed to {@link Listener#completed} in one step on the
+ * callback executor, so no edit is lost by the swap. The callback executor must run on the same
+ * thread that edits the tree, such as {@code SwingUtilities::invokeLater} for a Swing component.
+ *
+ * @author Darshan
+ */
+public class TreePruningService {
+
+    //nodes pruned between two checks for cancellation
+    private static final int CHECK_INTERVAL = 4096;
+
+    /**
+     * Receives the outcome of a {@link Task} on the callback executor.
+     */
+    public interface Listener {
+
+        /**
+         * Called whenever the task made at least one percent of progress.
+         *
+         * @param fraction the completed fraction of the work, from {@code 0} to {@code 1}
+         */
+        default void progress(double fraction) {
+        }
+
+        /**
+         * Called with the pruned tree, which already contains the edits recorded meanwhile.
+         *
+         * @param result the pruned and compacted tree, always a {@link QuadTreeImpl}
+         */
+        void completed(QuadTree result);
+
+        /**
+         * Called if pruning failed. Not called for cancelled tasks.
+         *
+         * @param error the cause of the failure
+         */
+        default void failed(Throwable error) {
+        }
+    }
+
+    /**
+     * A submitted pruning task.
+     */
+    public class Task {
+
+        private final Recorder recorder;
+        private final CompletableFuture<QuadTree> result = new CompletableFuture<>();
+        private volatile Future<?> work;
+        private volatile boolean cancelled;
+        private volatile double progress;
+
+        private Task(QuadTree tree) {
+            recorder = new Recorder(tree);
+        }
+
+        /**
+         * Returns the tree to edit while the task runs. Edits are applied to the original tree
+         * right away and replayed onto the result when the task completes.
+         *
+         * @return the recording view of the original tree
+         */
+        public QuadTree getTree() {
+            return recorder;
+        }
+
+        /**
+         * Returns the completed fraction of the work.
+         *
+         * @return the progress, from {@code 0} to {@code 1}
+         */
+        public double getProgress() {
+            return progress;
+        }
+
+        /**
+         * Stops the task. The listener is not called afterwards and the original tree stays as
+         * it is.
+         *
+         * @return {@code false} if the task had already completed
+         */
+        public boolean cancel() {
+            if (result.isDone()) {
+                return false;
+            }
+            cancelled = true;
+            Future<?> running = work;
+            if (running != null) {
+                running.cancel(true);
+            }
+            recorder.stop();
+            return result.cancel(false);
+        }
+
+        /**
+         * Returns {@code true} if the task completed, failed or was cancelled.
+         *
+         * @return whether the task is done
+         */
+        public boolean isDone() {
+            return result.isDone();
+        }
+
+        /**
+         * Returns a future of the result, completed right before the listener is called. The
+         * result is always a {@link QuadTreeImpl}.
+         *
+         * @return the future result
+         */
+        public CompletableFuture<QuadTree> getResult() {
+            return result;
+        }
+    }
+
+    private final ExecutorService workers;
+    private final Executor callbacks;
+
+    /**
+     * Creates a service with a single daemon worker thread.
+     *
+     * @param callbacks runs listener calls and the final swap, on the thread that edits trees
+     */
+    public TreePruningService(Executor callbacks) {
+        this(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tree-pruning");
+            thread.setDaemon(true);
+            return thread;
+        }), callbacks);
+    }
+
+    /**
+     * Creates a service running tasks on {@code workers}.
+     *
+     * @param workers runs the pruning itself
+     * @param callbacks runs listener calls and the final swap, on the thread that edits trees
+     * @throws IllegalArgumentException if either executor is null
+     */
+    public TreePruningService(ExecutorService workers, Executor callbacks) {
+        if (workers == null || callbacks == null) {
+            throw new IllegalArgumentException();
+        }
+        this.workers = workers;
+        this.callbacks = callbacks;
+    }
+
+    /**
+     * Starts pruning a snapshot of {@code tree}.
+     *
+     * @param tree the tree to prune, which is copied before this method returns
+     * @param depth the depth below which subtrees are collapsed, at least {@code 1}
+     * @param listener receives progress and the result
+     * @return the running task
+     * @throws IllegalArgumentException if {@code tree} or {@code listener} is null or
+     * {@code depth} is smaller than {@code 1}
+     */
+    public Task submit(QuadTree tree, int depth, Listener listener) {
+        if (tree == null || listener == null || depth < 1) {
+            throw new IllegalArgumentException();
+        }
+        QuadNode snapshot = QuadTreeImpl.copyOf(tree.getRoot(), tree.getDimension());
+        Task task = new Task(tree);
+        task.work = workers.submit(() -> {
+            try {
+                QuadTree pruned = prune(snapshot, depth, task, listener);
+                callbacks.execute(() -> finish(task, pruned, listener));
+            } catch (CancellationException e) {
+                //cancel() already completed the result
+            } catch (RuntimeException | Error e) {
+                callbacks.execute(() -> {
+                    if (!task.cancelled) {
+                        task.recorder.stop();
+                        task.result.completeExceptionally(e);
+                        listener.failed(e);
+                    }
+                });
+            }
+        });
+        return task;
+    }
+
+    /**
+     * Stops the worker threads. Running tasks are interrupted.
+     */
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    //helper methods
+    private QuadTree prune(QuadNode root, int depth, Task task, Listener listener) {
+        int total = root.getSize();
+        AtomicInteger visited = new AtomicInteger();
+        Runnable step = () -> {
+            if (task.cancelled || Thread.currentThread().isInterrupted()) {
+                throw new CancellationException();
+            }
+            //pruning is most of the work, compaction takes the last tenth
+            double fraction = 0.9 * visited.get() / total;
+            if (fraction - task.progress >= 0.01) {
+                task.progress = fraction;
+                callbacks.execute(() -> listener.progress(fraction));
+            }
+        };
+        pruneTree(root, depth, visited, step);
+        step.run();
+        QuadTreeImpl result = new QuadTreeImpl(root);
+        result.compact();
+        return result;
+    }
+
+    private void finish(Task task, QuadTree pruned, Listener listener) {
+        if (task.cancelled) {
+            return;
+        }
+        task.recorder.replay(pruned);
+        task.progress = 1;
+        task.result.complete(pruned);
+        listener.completed(pruned);
+    }
+
+    private static void pruneTree(QuadNode node, int depth, AtomicInteger visited,
+            Runnable step) {
+        if (node.isLeaf()) {
+            count(visited, step);
+            return;
+        }
+        if (depth <= 0) {
+            collapse(node, visited, step);
+            return;
+        }
+        count(visited, step);
+        for (QuadNode.QuadName quadrant : QuadNode.QuadName.values()) {
+            pruneTree(node.getQuadrant(quadrant), depth - 1, visited, step);
+        }
+    }
+
+    //turns node into a leaf of the average color of its subtree, averaging level by level
+    private static void collapse(QuadNode node, AtomicInteger visited, Runnable step) {
+        count(visited, step);
+        if (node.isLeaf()) {
+            return;
+        }
+        int[] colors = new int[4];
+        QuadNode.QuadName[] order = {QuadNode.QuadName.TOP_LEFT, QuadNode.QuadName.TOP_RIGHT,
+            QuadNode.QuadName.BOTTOM_LEFT, QuadNode.QuadName.BOTTOM_RIGHT};
+        for (int i = 0; i < order.length; i++) {
+            QuadNode child = node.getQuadrant(order[i]);
+            collapse(child, visited, step);
+            colors[i] = child.getColor();
+        }
+        for (QuadNode.QuadName quadrant : order) {
+            node.setQuadrant(quadrant, null);
+        }
+        node.setColor(QuadNodeImpl.averageColor(colors[0], colors[1], colors[2], colors[3]));
+    }
+
+    private static void count(AtomicInteger visited, Runnable step) {
+        if (visited.incrementAndGet() % CHECK_INTERVAL == 0) {
+            step.run();
+        }
+    }
+
+    /**
+     * Applies edits to the original tree and remembers them until the task is done.
+     */
+    private static class Recorder implements QuadTree {
+
+        private static final int SET_COLOR = 0;
+        private static final int FILL_RECT = 1;
+        private static final int FLOOD_FILL = 2;
+
+        private final QuadTree tree;
+        private List<int[]> edits = new ArrayList<>();
+
+        Recorder(QuadTree tree) {
+            this.tree = tree;
+        }
+
+        void stop() {
+            edits = null;
+        }
+
+        void replay(QuadTree target) {
+            if (edits == null) {
+                return;
+            }
+            for (int[] edit : edits) {
+                if (edit[0] == SET_COLOR) {
+                    target.setColor(edit[1], edit[2], edit[3]);
+                } else if (edit[0] == FILL_RECT) {
+                    target.fillRect(edit[1], edit[2], edit[3], edit[4], edit[5]);
+                } else {
+                    target.floodFill(edit[1], edit[2], edit[3]);
+                }
+            }
+            edits = null;
+        }
+
+        @Override
+        public void setColor(int x, int y, int color) {
+            tree.setColor(x, y, color);
+            if (edits != null) {
+                edits.add(new int[] {SET_COLOR, x, y, color});
+            }
+        }
+
+        @Override
+        public void fillRect(int x, int y, int width, int height, int color) {
+            tree.fillRect(x, y, width, height, color);
+            if (edits != null) {
+                edits.add(new int[] {FILL_RECT, x, y, width, height, color});
+            }
+        }
+
+        @Override
+        public void floodFill(int x, int y, int color) {
+            tree.floodFill(x, y, color);
+            if (edits != null) {
+                edits.add(new int[] {FLOOD_FILL, x, y, color});
+            }
+        }
+
+        @Override
+        public int getColor(int x, int y) {
+            return tree.getColor(x, y);
+        }
+
+        @Override
+        public int getDimension() {
+            return tree.getDimension();
+        }
+
+        @Override
+        public int[][] decompress() {
+            return tree.decompress();
+        }
+
+        @Override
+        public double getCompressionRatio() {
+            return tree.getCompressionRatio();
+        }
+
+        @Override
+        public QuadNode getRoot() {
+            return tree.getRoot();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+import static org.junit.Assert.*;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TreePruningServiceTest {
+
+    //stands in for the event dispatch thread, run by the test itself
+    LinkedBlockingQueue<Runnable> callbacks;
+    TreePruningService service;
+    QuadTree result;
+    int[][] img;
+    @Before
+    public void setUp() {
+        callbacks = new LinkedBlockingQueue<>();
+        service = new TreePruningService(Executors.newSingleThreadExecutor(), callbacks::add);
+        result = null;
+        img = new int[][] {
+            {0x000000, 0x000004, 0x101010, 0x101010},
+            {0x000008, 0x00000C, 0x101010, 0x101010},
+            {0x040000, 0x040000, 0x000100, 0x000200},
+            {0x040000, 0x040000, 0x000300, 0x000400}
+        };
+    }
+
+    @After
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    public void testPruneCollapsesBelowDepth() throws InterruptedException {
+        QuadTree tree = new QuadTreeImpl(img);
+        TreePruningService.Task task = service.submit(tree, 1, listener());
+        runUntilDone(task);
+        assertEquals(1.0, task.getProgress(), 0);
+        assertSame(result, task.getResult().getNow(null));
+        int[][] expected = {
+            {0x000006, 0x000006, 0x101010, 0x101010},
+            {0x000006, 0x000006, 0x101010, 0x101010},
+            {0x040000, 0x040000, 0x000300, 0x000300},
+            {0x040000, 0x040000, 0x000300, 0x000300}
+        };
+        assertArrayEquals(expected, result.decompress());
+        assertEquals(5, result.getRoot().getSize());
+        //the original tree is not pruned
+        assertArrayEquals(img, tree.decompress());
+    }
+
+    @Test
+    public void testPruneMergesEqualQuadrants() throws InterruptedException {
+        img[0] = new int[] {0x101010, 0x101010, 0x101010, 0x101010};
+        img[1] = new int[] {0x101010, 0x101010, 0x101010, 0x101010};
+        img[2] = new int[] {0x101010, 0x101010, 0x000000, 0x202020};
+        img[3] = new int[] {0x101010, 0x101010, 0x101010, 0x101010};
+        TreePruningService.Task task = service.submit(new QuadTreeImpl(img), 1, listener());
+        runUntilDone(task);
+        assertTrue(result.getRoot().isLeaf());
+        assertEquals(0x101010, result.getColor(3, 3));
+    }
+
+    @Test
+    public void testPruneKeepsAlpha() throws InterruptedException {
+        img[2][2] = 0x80FF0000;
+        img[2][3] = 0xFF0000FF;
+        img[3][2] = 0x80FF0000;
+        img[3][3] = 0xFF0000FF;
+        TreePruningService.Task task = service.submit(new QuadTreeImpl(img), 1, listener());
+        runUntilDone(task);
+        assertEquals(0xC0800080, result.getColor(3, 3));
+    }
+
+    @Test
+    public void testEditsDuringPruningAreKept() throws InterruptedException {
+        QuadTree tree = new QuadTreeImpl(img);
+        TreePruningService.Task task = service.submit(tree, 1, listener());
+        QuadTree live = task.getTree();
+        live.setColor(0, 0, 0xFFFFFF);
+        live.fillRect(2, 2, 2, 1, 0x00FF00);
+        live.floodFill(2, 0, 0x0000FF);
+        assertEquals(0xFFFFFF, tree.getColor(0, 0));
+        assertEquals(0x0000FF, live.getColor(3, 1));
+        runUntilDone(task);
+        assertEquals(0xFFFFFF, result.getColor(0, 0));
+        assertEquals(0x000006, result.getColor(1, 1));
+        assertEquals(0x00FF00, result.getColor(3, 2));
+        assertEquals(0x000300, result.getColor(3, 3));
+        assertEquals(0x0000FF, result.getColor(2, 1));
+        //edits made after the swap are not replayed twice
+        live.setColor(1, 1, 0x123456);
+        assertEquals(0x000006, result.getColor(1, 1));
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        QuadTree tree = new QuadTreeImpl(img);
+        TreePruningService.Task task = service.submit(tree, 1, listener());
+        assertTrue(task.cancel());
+        assertTrue(task.isDone());
+        assertFalse(task.cancel());
+        //the worker may still post callbacks, which must do nothing
+        Runnable callback;
+        while ((callback = callbacks.poll(100, TimeUnit.MILLISECONDS)) != null) {
+            callback.run();
+        }
+        assertNull(result);
+        assertTrue(task.getResult().isCancelled());
+        assertArrayEquals(img, tree.decompress());
+    }
+
+    @Test
+    public void testProgress() throws InterruptedException {
+        int[][] noisy = new int[256][256];
+        for (int y = 0; y < noisy.length; y++) {
+            for (int x = 0; x < noisy.length; x++) {
+                noisy[y][x] = (x * 31 + y * 17) % 7;
+            }
+        }
+        double[] last = {0};
+        TreePruningService.Task task = service.submit(new QuadTreeImpl(noisy, 0), 2,
+                new TreePruningService.Listener() {
+                    @Override
+                    public void progress(double fraction) {
+                        assertTrue(fraction > last[0]);
+                        assertTrue(fraction <= 1);
+                        last[0] = fraction;
+                    }
+
+                    @Override
+                    public void completed(QuadTree tree) {
+                        result = tree;
+                    }
+                });
+        runUntilDone(task);
+        assertTrue(last[0] > 0);
+        assertEquals(1.0, task.getProgress(), 0);
+        //equal siblings left by pruning are merged
+        assertTrue(result.getRoot().getSize() < 21);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testInvalidDepth() {
+        service.submit(new QuadTreeImpl(img), 0, listener());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testNullTree() {
+        service.submit(null, 1, listener());
+    }
+
+    //helper methods
+    private TreePruningService.Listener listener() {
+        return tree -> result = tree;
+    }
+
+    private void runUntilDone(TreePruningService.Task task) throws InterruptedException {
+        while (!task.isDone()) {
+            Runnable callback = callbacks.poll(5, TimeUnit.SECONDS);
+            assertNotNull(callback);
+            callback.run();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Command line benchmark of building a {@link QuadTreeImpl} from scan-like images: a flat page
+ * background with lines of small dark glyphs. Compares the row scanning build against a bottom-up
+ * build that checks 2x2 blocks and merges four equal children at every level, and prints the
+ * throughput in megabytes of raw 32-bit pixels per second.
+ * <p/>
+ * Usage: {@code java UniformityBenchmark [dimension] [iterations]}
+ *
+ * @author Darshan
+ */
+public class UniformityBenchmark {
+
+    public static void main(String[] args) {
+        int dimension = args.length > 0 ? Integer.parseInt(args[0]) : 2048;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int[][] img = scanImage(dimension);
+        double rawMegabytes = 4.0 * dimension * dimension / (1 << 20);
+        long scanNanos = 0;
+        long pairNanos = 0;
+        int nodes = 0;
+        //the first round only warms up the JIT
+        for (int i = 0; i <= iterations; i++) {
+            long start = System.nanoTime();
+            QuadTree tree = new QuadTreeImpl(img);
+            long middle = System.nanoTime();
+            QuadNode reference = bottomUp(img, 0, 0, dimension);
+            long end = System.nanoTime();
+            if (i > 0) {
+                scanNanos += middle - start;
+                pairNanos += end - middle;
+            }
+            nodes = tree.getRoot().getSize();
+            if (nodes != reference.getSize()) {
+                throw new IllegalStateException();
+            }
+        }
+        System.out.printf("scan %dx%d nodes=%d%n", dimension, dimension, nodes);
+        System.out.printf("row scan  %.1f MB/s%n", rawMegabytes * iterations / (scanNanos / 1e9));
+        System.out.printf("bottom-up %.1f MB/s%n", rawMegabytes * iterations / (pairNanos / 1e9));
+    }
+
+    //the former build: every 2x2 block is compared and equal children are merged on the way up
+    private static QuadNode bottomUp(int[][] img, int x, int y, int dimension) {
+        if (dimension == 1) {
+            return new QuadNodeImpl(1, img[y][x]);
+        }
+        int half = dimension / 2;
+        QuadNode[] children = {bottomUp(img, x, y, half), bottomUp(img, x + half, y, half),
+            bottomUp(img, x, y + half, half), bottomUp(img, x + half, y + half, half)};
+        boolean merge = children[0].isLeaf();
+        for (QuadNode child : children) {
+            merge = merge && child.isLeaf() && child.getColor() == children[0].getColor();
+        }
+        if (merge) {
+            return new QuadNodeImpl(dimension, children[0].getColor());
+        }
+        QuadNode node = new QuadNodeImpl(dimension);
+        node.setQuadrant(QuadNode.QuadName.TOP_LEFT, children[0]);
+        node.setQuadrant(QuadNode.QuadName.TOP_RIGHT, children[1]);
+        node.setQuadrant(QuadNode.QuadName.BOTTOM_LEFT, children[2]);
+        node.setQuadrant(QuadNode.QuadName.BOTTOM_RIGHT, children[3]);
+        return node;
+    }
+
+    //an off-white page with wide margins and lines of text
+    private static int[][] scanImage(int dimension) {
+        Random random = new Random(11);
+        int[][] img = new int[dimension][dimension];
+        for (int[] row : img) {
+            Arrays.fill(row, 0xF4F1EA);
+        }
+        int margin = dimension / 8;
+        int lineHeight = Math.max(4, dimension / 64);
+        for (int top = margin; top + lineHeight < dimension - margin; top += 2 * lineHeight) {
+            int x = margin;
+            while (x < dimension - margin - lineHeight) {
+                int width = 1 + random.nextInt(lineHeight);
+                if (random.nextInt(6) > 0) {
+                    for (int row = top; row < top + lineHeight; row++) {
+                        for (int col = x; col < x + width; col++) {
+                            if (random.nextInt(3) > 0) {
+                                img[row][col] = 0x202020;
+                            }
+                        }
+                    }
+                }
+                x += width + 1;
+            }
+        }
+        return img;
+    }
+}
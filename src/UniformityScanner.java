@@ -0,0 +1,64 @@
+import java.util.Arrays;
+
+/**
+ * Tests whether square blocks of an image hold a single color, a whole row at a time.
+ * <p/>
+ * The first row of a block is compared against its first pixel with a branch-free loop that
+ * ORs together the XOR of every pixel with the expected color, which the JIT can unroll and
+ * vectorize since it has no early exit. Every following row is compared against the first with
+ * {@link Arrays#mismatch(int[], int, int, int[], int, int)}, a HotSpot intrinsic that compares
+ * the rows with the widest vector instructions of the machine and stops at the first difference.
+ * Rows shorter than {@link #WIDE_ROW} stay on the scalar loop, where the intrinsic's setup
+ * costs more than it saves.
+ *
+ * @author Darshan
+ */
+final class UniformityScanner {
+
+    static final int WIDE_ROW = 16;
+
+    private UniformityScanner() {
+    }
+
+    /**
+     * Returns {@code true} if every pixel of the {@code size x size} block with top left corner
+     * {@code (x, y)} has the same color.
+     *
+     * @param img the image, indexed as {@code img[y][x]}
+     * @param x the left edge of the block
+     * @param y the top edge of the block
+     * @param size the side length of the block
+     * @return {@code true} if the block is uniform
+     */
+    static boolean isUniform(int[][] img, int x, int y, int size) {
+        int[] first = img[y];
+        int color = first[x];
+        if (!isUniformRow(first, x, size, color)) {
+            return false;
+        }
+        int end = x + size;
+        if (size < WIDE_ROW) {
+            for (int row = y + 1; row < y + size; row++) {
+                if (!isUniformRow(img[row], x, size, color)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        for (int row = y + 1; row < y + size; row++) {
+            if (Arrays.mismatch(img[row], x, end, first, x, end) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //helper methods
+    private static boolean isUniformRow(int[] row, int x, int size, int color) {
+        int difference = 0;
+        for (int i = x; i < x + size; i++) {
+            difference |= row[i] ^ color;
+        }
+        return difference == 0;
+    }
+}
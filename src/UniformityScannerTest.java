@@ -0,0 +1,34 @@
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class UniformityScannerTest {
+
+    @Test
+    public void testIsUniform() {
+        int[][] img = new int[32][32];
+        assertTrue(UniformityScanner.isUniform(img, 0, 0, 32));
+        img[31][31] = 1;
+        assertFalse(UniformityScanner.isUniform(img, 0, 0, 32));
+        assertTrue(UniformityScanner.isUniform(img, 0, 0, 16));
+        assertTrue(UniformityScanner.isUniform(img, 31, 31, 1));
+        img[2][1] = 1;
+        assertFalse(UniformityScanner.isUniform(img, 0, 0, 4));
+        assertTrue(UniformityScanner.isUniform(img, 0, 4, 4));
+    }
+
+    @Test
+    public void testBuildKeepsNegativeColors() {
+        int[][] img = new int[64][64];
+        for (int[] row : img) {
+            Arrays.fill(row, -1);
+        }
+        img[40][50] = 0;
+        QuadTree tree = new QuadTreeImpl(img);
+        assertArrayEquals(img, tree.decompress());
+        //one split per level down to the odd pixel
+        assertEquals(1 + 4 * 6, tree.getRoot().getSize());
+    }
+}